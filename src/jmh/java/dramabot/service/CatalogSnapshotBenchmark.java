@@ -0,0 +1,35 @@
+package dramabot.service;
+
+import dramabot.service.model.CatalogEntryBean;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of categorizing a catalog after every load, see {@link CatalogSnapshot#of(List, CatalogExport)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CatalogSnapshotBenchmark {
+
+    @Param({SyntheticCatalog.CATALOG_CSV, "1000", "100000", "1000000"})
+    public String rows;
+
+    private List<CatalogEntryBean> beans;
+
+    @Setup
+    public void setUp() throws IOException {
+        beans = SyntheticCatalog.create(rows);
+    }
+
+    @Benchmark
+    public CatalogSnapshot createSnapshot() {
+        return CatalogSnapshot.of(beans, CatalogExport.EMPTY);
+    }
+}
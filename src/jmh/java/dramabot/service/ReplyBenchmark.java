@@ -0,0 +1,59 @@
+package dramabot.service;
+
+import dramabot.service.model.CatalogEntryBean;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static dramabot.slack.SlackApp.CRITICA;
+
+/**
+ * Cost of one reply: classification of the payload and choice of the text. Payloads rotate through
+ * {@link SyntheticCatalog#PAYLOADS}, so the result is the average over all reply categories.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReplyBenchmark {
+
+    private static final String CHANNEL = "C0BENCHMARK";
+
+    @Param({SyntheticCatalog.CATALOG_CSV, "1000", "100000", "1000000"})
+    public String rows;
+
+    private CatalogSnapshot catalog;
+
+    private KeywordRules rules;
+
+    private List<CatalogEntryBean> critiche;
+
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        catalog = CatalogSnapshot.of(SyntheticCatalog.create(rows), CatalogExport.EMPTY);
+        critiche = catalog.getBeans(CRITICA);
+        rules = KeywordRulesManager.defaults();
+    }
+
+    @Benchmark
+    public String appendPayload() {
+        String payload = SyntheticCatalog.PAYLOADS[next];
+        next = (next + 1) % SyntheticCatalog.PAYLOADS.length;
+        StringBuilder resultBuilder = new StringBuilder();
+        SlackManagerUtils.appendPayload(rules, catalog, CHANNEL, payload, resultBuilder);
+        return resultBuilder.toString();
+    }
+
+    @Benchmark
+    public String appendRandomText() {
+        StringBuilder resultBuilder = new StringBuilder();
+        SlackManagerUtils.appendRandomText(CHANNEL + CRITICA, critiche, resultBuilder);
+        return resultBuilder.toString();
+    }
+}
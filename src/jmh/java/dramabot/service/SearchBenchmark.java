@@ -0,0 +1,51 @@
+package dramabot.service;
+
+import dramabot.service.model.CatalogEntryBean;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static dramabot.slack.SlackApp.CRITICA;
+
+/**
+ * Cost of one search of {@link CatalogSearchIndex}: a word, a prefix with many expansions and a filtered search.
+ * Run with more threads (-t) to see the pooled score accumulators under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SearchBenchmark {
+
+    private static final int LIMIT = 5;
+
+    @Param({SyntheticCatalog.CATALOG_CSV, "1000", "100000", "1000000"})
+    public String rows;
+
+    private CatalogSearchIndex index;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<CatalogEntryBean> beans = SyntheticCatalog.create(rows);
+        index = CatalogSnapshot.of(beans, CatalogExport.EMPTY).getSearchIndex();
+    }
+
+    @Benchmark
+    public List<CatalogEntryBean> searchWords() {
+        return index.search("il conflitto del personaggio", null, null, LIMIT);
+    }
+
+    @Benchmark
+    public List<CatalogEntryBean> searchPrefix() {
+        return index.search("s", null, null, LIMIT);
+    }
+
+    @Benchmark
+    public List<CatalogEntryBean> searchFiltered() {
+        return index.search("finale silenzio", null, CRITICA, LIMIT);
+    }
+}
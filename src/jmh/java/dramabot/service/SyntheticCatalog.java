@@ -0,0 +1,89 @@
+package dramabot.service;
+
+import dramabot.service.model.CatalogEntryBean;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static dramabot.slack.SlackApp.*;
+
+/**
+ * Catalogs and payloads for the benchmarks. The synthetic catalogs have the mix of config/catalog.csv: mostly
+ * critiche and feedback, some "e se", a few authors with aliases.
+ */
+enum SyntheticCatalog {
+    ;
+
+    /**
+     * Value of the "rows" parameter which loads config/catalog.csv instead of a synthetic catalog.
+     */
+    static final String CATALOG_CSV = "catalog.csv";
+
+    private static final String[] AUTHORS = {"Alessandro", "Stefania", "Giulia", "Anna", "Marco", "Chiara"};
+
+    private static final String[] ALIASES = {"gubiani", "tollis", "ursella", "dipauli", "mstr", "chiaretta"};
+
+    private static final String[] TYPES = {CRITICA, CRITICA, CRITICA, FEEDBACK, FEEDBACK, E_SE, EVERYTHING_ELSE};
+
+    private static final String[] WORDS = {"personaggio", "scena", "dialogo", "conflitto", "battuta", "sipario",
+            "pubblico", "ritmo", "tensione", "monologo", "silenzio", "finale", "atto", "voce", "corpo", "spazio"};
+
+    /**
+     * Payloads as users write them: one for each reply category, authors by name and alias, and messages
+     * without any keyword.
+     */
+    static final String[] PAYLOADS = {
+            "mi dai un feedback sul secondo atto?",
+            "secondo te il finale funziona?",
+            "fammi una domanda critica sul mio monologo",
+            "devo riscrivere la scena del sipario?",
+            "e se il personaggio non capisce cosa vuole?",
+            "ho dei dubbi sulla tensione, spiegami",
+            "cosa direbbe Stefania di questa battuta?",
+            "chiedi a gubiani cosa ne pensa",
+            "dimmi qualcosa",
+            "ti adoro dramabot",
+            "help",
+            "buongiorno a tutti, oggi piove e il teatro è chiuso",
+            "ciao",
+            "Quando è la prossima prova? Non ho ancora letto il copione."
+    };
+
+    static List<CatalogEntryBean> create(String rows) throws IOException {
+        if (CATALOG_CSV.equals(rows)) {
+            try (Reader reader = Files.newBufferedReader(Paths.get("config", CATALOG_CSV), StandardCharsets.UTF_8)) {
+                return CatalogManager.<CatalogEntryBean>csvToBean(reader, CatalogEntryBean.class).parse();
+            }
+        }
+        return create(Integer.parseInt(rows));
+    }
+
+    static List<CatalogEntryBean> create(int rows) {
+        Random random = new Random(rows);
+        List<CatalogEntryBean> beans = new ArrayList<>(rows + ALIASES.length);
+        for (int i = 0; i < ALIASES.length; i++) {
+            beans.add(new CatalogEntryBean(" " + ALIASES[i], AUTHORS[i], ALIAS));
+        }
+        for (int i = 0; i < rows; i++) {
+            String type = TYPES[random.nextInt(TYPES.length)];
+            String author = 0 == random.nextInt(4) ? AUTHORS[random.nextInt(AUTHORS.length)] : " ";
+            beans.add(new CatalogEntryBean(createText(random, i), author, " " + type));
+        }
+        return beans;
+    }
+
+    private static String createText(Random random, int number) {
+        StringBuilder text = new StringBuilder("Come cambia il tuo ");
+        int words = 4 + random.nextInt(12);
+        for (int i = 0; i < words; i++) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return text.append("n. ").append(number).append('?').toString();
+    }
+}
@@ -6,13 +6,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.boot.web.servlet.ServletComponentScan;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 
 
 @SpringBootApplication
-@ServletComponentScan
 public class Dramabot {
 
     private final Logger logger = LoggerFactory.getLogger(Dramabot.class);
@@ -29,24 +27,14 @@ public class Dramabot {
     @Bean
     public CommandLineRunner commandLineRunner(ApplicationContext ctx) {
         return args -> {
-            /*SocketModeApp socketModeApp = ctx.getBean(SocketModeApp.class);*/
             CatalogManager catalogManager = ctx.getBean(CatalogManager.class);
-            boolean initialized = catalogManager.initialize();
-            if (!initialized) {
-                logger.error("catalog.csv could not be read");
-            }
-            /*socketModeApp.start();*/
+            catalogManager.initializeAsync().whenComplete((initialized, throwable) -> {
+                if (null != throwable) {
+                    logger.error("catalog.csv could not be read", throwable);
+                } else if (!initialized) {
+                    logger.error("catalog.csv could not be read");
+                }
+            });
         };
     }
-
-/*    @Bean
-    public SocketModeApp socketModeApp(ApplicationContext ctx) {
-        App app = ctx.getBean(App.class);
-        try {
-            return new SocketModeApp(socketToken, SocketModeClient.Backend.JavaWebSocket, app);
-        } catch (IOException e) {
-            logger.error("SocketModeApp could not be started: {}", e.getMessage());
-        }
-        throw new BeanInitializationException("SocketModeApp could not be started.");
-    }*/
 }
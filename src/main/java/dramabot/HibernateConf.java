@@ -2,6 +2,7 @@ package dramabot;
 
 import org.apache.tomcat.dbcp.dbcp2.BasicDataSource;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.orm.jpa.JpaTransactionManager;
@@ -15,10 +16,20 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 import javax.sql.DataSource;
 import java.util.Properties;
 
+/**
+ * Database of the catalog store "jpa". With {@code dramabot.catalog.store=memory} none of these beans exist.
+ * By default the database lives in memory and its schema is created at every start, the profile "persistent"
+ * keeps it in a file and only updates the schema. With {@code dramabot.catalog.cache.enabled=true} catalog
+ * entries and read queries are kept in the second-level cache. It is off by default: replies read the catalog
+ * snapshot, the database is read once per import, so the cache would only hold a second copy of the catalog.
+ */
 @Configuration
 @EnableTransactionManagement
+@ConditionalOnProperty(name = "dramabot.catalog.store", havingValue = "jpa", matchIfMissing = true)
 public class HibernateConf {
 
+    public static final int JDBC_BATCH_SIZE = 100;
+
     @Value("${spring.datasource.url}")
     private String datasourceUrl;
 
@@ -34,6 +45,12 @@ public class HibernateConf {
     @Value("${spring.jpa.database-platform}")
     private String dialect;
 
+    @Value("${dramabot.catalog.ddl-auto:create-drop}")
+    private String ddlAuto;
+
+    @Value("${dramabot.catalog.cache.enabled:false}")
+    private boolean cacheEnabled;
+
     @Bean
     public DataSource dataSource() {
         BasicDataSource dataSource = new BasicDataSource();
@@ -69,8 +86,18 @@ public class HibernateConf {
 
     private Properties hibernateProperties() {
         Properties hibernateProperties = new Properties();
-        hibernateProperties.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        hibernateProperties.setProperty("hibernate.hbm2ddl.auto", ddlAuto);
         hibernateProperties.setProperty("hibernate.dialect", dialect);
+        hibernateProperties.setProperty("hibernate.jdbc.batch_size", String.valueOf(JDBC_BATCH_SIZE));
+        hibernateProperties.setProperty("hibernate.order_inserts", "true");
+        // entries and read queries of the catalog in caffeine, bounded in application.conf
+        hibernateProperties.setProperty("hibernate.cache.use_second_level_cache", String.valueOf(cacheEnabled));
+        hibernateProperties.setProperty("hibernate.cache.use_query_cache", String.valueOf(cacheEnabled));
+        hibernateProperties.setProperty("hibernate.cache.region.factory_class", "jcache");
+        hibernateProperties.setProperty("hibernate.javax.cache.provider",
+                "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider");
+        // hits and misses per region, published by micrometer as hibernate.second.level.cache.requests
+        hibernateProperties.setProperty("hibernate.generate_statistics", String.valueOf(cacheEnabled));
 
         return hibernateProperties;
     }
@@ -0,0 +1,51 @@
+package dramabot;
+
+import dramabot.slack.SlackApiMetricsInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The one http client for all outbound traffic: Slack api calls of bolt and of the reply code as well as catalog
+ * downloads. Sharing it keeps connections (and their TLS sessions) alive between replies.
+ */
+@Configuration
+public class HttpClientConf {
+
+    @Value("${dramabot.http.max-idle-connections:10}")
+    private int maxIdleConnections;
+
+    @Value("${dramabot.http.keep-alive-seconds:300}")
+    private long keepAliveSeconds;
+
+    @Value("${dramabot.http.connect-timeout-millis:5000}")
+    private long connectTimeoutMillis;
+
+    @Value("${dramabot.http.read-timeout-millis:30000}")
+    private long readTimeoutMillis;
+
+    @Value("${dramabot.http.write-timeout-millis:30000}")
+    private long writeTimeoutMillis;
+
+    @Value("${dramabot.slack.methods-endpoint-url-prefix:https://slack.com/api/}")
+    private String methodsEndpointUrlPrefix;
+
+    @Bean
+    public OkHttpClient okHttpClient(MeterRegistry meterRegistry) {
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .writeTimeout(writeTimeoutMillis, TimeUnit.MILLISECONDS)
+                .addInterceptor(new SlackApiMetricsInterceptor(meterRegistry, methodsEndpointUrlPrefix))
+                .build();
+    }
+}
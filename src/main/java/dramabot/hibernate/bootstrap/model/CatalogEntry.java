@@ -1,28 +1,50 @@
 package dramabot.hibernate.bootstrap.model;
 
+import dramabot.HibernateConf;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.springframework.util.DigestUtils;
+
 import javax.persistence.*;
+import java.nio.charset.StandardCharsets;
 
 @Entity
-@Table
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CatalogEntry.CACHE_REGION)
+// (entryType, id) lets a random entry of a type be found with a seek instead of a scan
+@Table(indexes = {@Index(columnList = "rowHash"), @Index(columnList = "entryType, id"),
+        @Index(columnList = "entryAuthor")})
 public class CatalogEntry {
 
+    public static final String CACHE_REGION = "dramabot.catalog-entry";
+
+    public static final int TEXT_LENGTH = 1800;
+    public static final int AUTHOR_LENGTH = 140;
+    public static final int TYPE_LENGTH = 60;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "catalogEntrySequence")
+    @SequenceGenerator(name = "catalogEntrySequence", sequenceName = "catalog_entry_seq",
+            allocationSize = HibernateConf.JDBC_BATCH_SIZE)
     private long id;
 
-    @Column(length = 1800)
+    @Column(length = TEXT_LENGTH)
     private String entryText;
 
-    @Column(length = 140)
+    @Column(length = AUTHOR_LENGTH)
     private String entryAuthor;
 
-    @Column(length = 60)
+    @Column(length = TYPE_LENGTH)
     private String entryType;
 
+    @Column(length = 32)
+    private String rowHash;
+
     public CatalogEntry(String entryText, String entryAuthor, String entryType) {
         this.entryText = entryText;
         this.entryAuthor = entryAuthor;
         this.entryType = entryType;
+        updateRowHash();
     }
 
     public CatalogEntry() {
@@ -34,6 +56,7 @@ public class CatalogEntry {
 
     public void setEntryText(String entryText) {
         this.entryText = entryText;
+        updateRowHash();
     }
 
     public String getEntryAuthor() {
@@ -42,6 +65,7 @@ public class CatalogEntry {
 
     public void setEntryAuthor(String entryAuthor) {
         this.entryAuthor = entryAuthor;
+        updateRowHash();
     }
 
     public String getEntryType() {
@@ -50,6 +74,32 @@ public class CatalogEntry {
 
     public void setEntryType(String entryType) {
         this.entryType = entryType;
+        updateRowHash();
+    }
+
+    public String getRowHash() {
+        return rowHash;
+    }
+
+    /**
+     * Hash of text, author and type, two entries with the same hash are the same catalog row.
+     *
+     * @param entryText   text of the entry
+     * @param entryAuthor author of the entry
+     * @param entryType   type of the entry
+     * @return hex encoded md5 of the row
+     */
+    public static String rowHash(String entryText, String entryAuthor, String entryType) {
+        String row = nullToEmpty(entryText) + '\u0000' + nullToEmpty(entryAuthor) + '\u0000' + nullToEmpty(entryType);
+        return DigestUtils.md5DigestAsHex(row.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String nullToEmpty(String value) {
+        return null != value ? value : "";
+    }
+
+    private void updateRowHash() {
+        rowHash = rowHash(entryText, entryAuthor, entryType);
     }
 
 }
@@ -0,0 +1,43 @@
+package dramabot.hibernate.bootstrap.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Which catalog file the stored entries were imported from. With a persistent database this lets a restart skip
+ * the import of an unchanged catalog.csv.
+ */
+@Entity
+public class CatalogImportState {
+
+    public static final String CATALOG = "catalog";
+
+    @Id
+    @Column(length = 32)
+    private String name;
+
+    // hex encoded SHA-256 of the catalog file, null while an import is running
+    @Column(length = 64)
+    private String checksum;
+
+    public CatalogImportState(String name, String checksum) {
+        this.name = name;
+        this.checksum = checksum;
+    }
+
+    public CatalogImportState() {
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+}
@@ -0,0 +1,125 @@
+package dramabot.service;
+
+import com.slack.api.methods.AsyncMethodsClient;
+import com.slack.api.methods.request.usergroups.users.UsergroupsUsersListRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Members of the slack user group of the dramabot administrators. The members are fetched at most once per ttl:
+ * concurrent checks share the call in flight, failed calls are not cached. {@link #invalidate()} forgets them
+ * before the ttl is over, e.g. when slack reports a change of the group.
+ */
+@Service
+public class AdminGroupCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminGroupCache.class);
+
+    @Autowired
+    private AsyncMethodsClient client;
+
+    @Value("${dramabot.admin.usergroup:S01RM9CR39C}")
+    private String usergroup;
+
+    @Value("${dramabot.admin.cache-ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final AtomicReference<Members> members = new AtomicReference<>();
+
+    public String getUsergroup() {
+        return usergroup;
+    }
+
+    /**
+     * @param user id of a slack user
+     * @return future completing with true if the user is an administrator, exceptionally if the members could
+     * not be fetched
+     */
+    public CompletableFuture<Boolean> isAdmin(String user) {
+        return getMembers().thenApply(users -> users.contains(user));
+    }
+
+    /**
+     * Blocking variant of {@link #isAdmin(String)} for handlers which are not asynchronous anyway.
+     *
+     * @param user id of a slack user
+     * @return true if the user is an administrator, false if not or if the members could not be fetched
+     */
+    public boolean isAdminNow(String user) {
+        try {
+            return isAdmin(user).get();
+        } catch (ExecutionException e) {
+            logger.warn("could not check if {} is an administrator: {}", user, e.getCause().getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Forgets the cached members, the next check asks slack again.
+     */
+    public void invalidate() {
+        members.set(null);
+        logger.debug("members of user group {} invalidated", usergroup);
+    }
+
+    private CompletableFuture<Set<String>> getMembers() {
+        while (true) {
+            Members current = members.get();
+            if (null != current && !current.isExpired()) {
+                return current.users;
+            }
+            Members next = new Members(System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds));
+            if (members.compareAndSet(current, next)) {
+                fetch(next);
+                return next.users;
+            }
+        }
+    }
+
+    private void fetch(Members target) {
+        UsergroupsUsersListRequest request = UsergroupsUsersListRequest.builder()
+                .token(System.getenv("SLACK_BOT_TOKEN")).usergroup(usergroup).build();
+        client.usergroupsUsersList(request).whenComplete((response, throwable) -> {
+            if (null != throwable) {
+                members.compareAndSet(target, null);
+                target.users.completeExceptionally(throwable);
+            } else if (!response.isOk()) {
+                members.compareAndSet(target, null);
+                target.users.completeExceptionally(new IllegalStateException(
+                        "usergroups.users.list for " + usergroup + " failed: " + response.getError()));
+            } else {
+                logger.debug("fetched {} members of user group {}", response.getUsers().size(), usergroup);
+                target.users.complete(Collections.unmodifiableSet(new HashSet<>(response.getUsers())));
+            }
+        });
+    }
+
+    private static final class Members {
+
+        private final CompletableFuture<Set<String>> users = new CompletableFuture<>();
+
+        private final long expiresAt;
+
+        private Members(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return users.isDone() && 0 < System.nanoTime() - expiresAt;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package dramabot.service;
+
+import java.nio.file.Path;
+
+/**
+ * What is known about one download of a catalog: the validators of the server for conditional requests and the
+ * hash of the content. {@link #getFile()} is the downloaded temp file, null if the server answered "not modified".
+ * Once the download is imported, {@link #getCatalogHash()} is the hash of catalog.csv it produced.
+ */
+final class CatalogDownload {
+
+    private final String url;
+
+    private final String etag;
+
+    private final String lastModified;
+
+    private final String hash;
+
+    private final Path file;
+
+    private final String catalogHash;
+
+    CatalogDownload(String url, String etag, String lastModified, String hash, Path file) {
+        this(url, etag, lastModified, hash, file, null);
+    }
+
+    private CatalogDownload(String url, String etag, String lastModified, String hash, Path file, String catalogHash) {
+        this.url = url;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.hash = hash;
+        this.file = file;
+        this.catalogHash = catalogHash;
+    }
+
+    static CatalogDownload notModified(CatalogDownload previous) {
+        return new CatalogDownload(previous.url, previous.etag, previous.lastModified, previous.hash, null);
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    String getEtag() {
+        return etag;
+    }
+
+    String getLastModified() {
+        return lastModified;
+    }
+
+    String getHash() {
+        return hash;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return the hash of catalog.csv after this download was imported, null if it was not imported
+     */
+    String getCatalogHash() {
+        return catalogHash;
+    }
+
+    /**
+     * @return the same download without the temp file, which was moved or deleted
+     */
+    CatalogDownload withoutFile() {
+        return new CatalogDownload(url, etag, lastModified, hash, null);
+    }
+
+    /**
+     * @param catalogHash the hash of catalog.csv after the import, it differs from {@link #getHash()} if the file
+     *                    was rewritten
+     * @return the same download, imported
+     */
+    CatalogDownload imported(String catalogHash) {
+        return new CatalogDownload(url, etag, lastModified, hash, null, catalogHash);
+    }
+}
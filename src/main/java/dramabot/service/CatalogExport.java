@@ -0,0 +1,62 @@
+package dramabot.service;
+
+/**
+ * The catalog serialized as csv file, produced once per catalog load and uploaded as it is on every "catalogo"
+ * request. It always belongs to the {@link CatalogSnapshot} it was published with.
+ */
+public final class CatalogExport {
+
+    static final CatalogExport EMPTY = new CatalogExport(0L, new byte[0], false);
+
+    private static final String FILENAME = "catalog.csv";
+
+    private final long version;
+
+    private final byte[] content;
+
+    private final boolean gzipped;
+
+    private final String sha256;
+
+    CatalogExport(long version, byte[] content, boolean gzipped) {
+        this.version = version;
+        this.content = content;
+        this.gzipped = gzipped;
+        this.sha256 = ChecksumUtils.hex(ChecksumUtils.newDigest().digest(content));
+    }
+
+    /**
+     * @return number of the catalog load which produced this export
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * The bytes are shared by all uploads and must not be modified.
+     *
+     * @return the csv file, gzip compressed if the {@link #getFiletype()} is gzip
+     */
+    public byte[] getContent() {
+        return content;
+    }
+
+    /**
+     * @return hex SHA-256 of the content, the same content always has the same checksum whatever its version
+     */
+    public String getSha256() {
+        return sha256;
+    }
+
+    public String getFilename() {
+        return gzipped ? FILENAME + ".gz" : FILENAME;
+    }
+
+    public String getFiletype() {
+        return gzipped ? "gzip" : "csv";
+    }
+
+    public boolean isEmpty() {
+        return 0 == content.length;
+    }
+}
@@ -0,0 +1,144 @@
+package dramabot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Reloads the catalog when catalog.csv changes on disk, e.g. when a mounted ConfigMap is updated. The directory
+ * of {@link CatalogManager#CONFIG_PATH} (or {@link CatalogManager#MAGIC_CONFIG_PATH}) is watched, not the file: a
+ * ConfigMap is swapped by renaming a symlink, so the event is not about catalog.csv itself. Events are debounced,
+ * the reload runs once the directory was quiet for {@code dramabot.catalog.watch.debounce-millis} and only
+ * imports if the content differs from the catalog in use.
+ */
+@Component
+@ConditionalOnProperty(name = "dramabot.catalog.watch.enabled", havingValue = "true", matchIfMissing = true)
+public class CatalogFileWatcher implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogFileWatcher.class);
+
+    private final CatalogManager catalogManager;
+
+    private final long debounceMillis;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dramabot-catalog-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private WatchService watchService;
+
+    // only touched by the watch thread
+    private ScheduledFuture<?> pendingReload;
+
+    private volatile boolean running;
+
+    public CatalogFileWatcher(CatalogManager catalogManager,
+                              @Value("${dramabot.catalog.watch.debounce-millis:2000}") long debounceMillis) {
+        this.catalogManager = catalogManager;
+        this.debounceMillis = debounceMillis;
+    }
+
+    @Override
+    public void start() {
+        // the same precedence as the import: config/ if it is there, else the working directory
+        Path directory = CatalogManager.CONFIG_PATH.toAbsolutePath().normalize().getParent();
+        if (!Files.isDirectory(directory)) {
+            directory = CatalogManager.MAGIC_CONFIG_PATH.toAbsolutePath().normalize().getParent();
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        } catch (IOException e) {
+            logger.warn("catalog.csv is not watched, changes need a restart: {}", e.getMessage());
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::watch, "dramabot-catalog-watch");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("watching {} for changes of catalog.csv", directory);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+        if (null != watchService) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.debug("could not close watch service", e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void watch() {
+        while (running) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            boolean relevant = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                relevant |= isCatalogEvent(event);
+            }
+            key.reset();
+            if (!relevant) {
+                continue;
+            }
+            if (null != pendingReload) {
+                pendingReload.cancel(false);
+            }
+            pendingReload = scheduler.schedule(this::reload, debounceMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static boolean isCatalogEvent(WatchEvent<?> event) {
+        if (OVERFLOW == event.kind()) {
+            return true;
+        }
+        String name = String.valueOf(event.context());
+        // "..data" is the symlink a ConfigMap volume swaps on update
+        return CatalogManager.MAGIC_CONFIG_PATH.getFileName().toString().equals(name) || name.startsWith("..");
+    }
+
+    private void reload() {
+        try {
+            if (catalogManager.reloadIfChanged()) {
+                logger.info("catalog reloaded from changed catalog.csv, version {}", catalogManager.getSnapshot().getVersion());
+            }
+        } catch (Exception e) {
+            logger.error("changed catalog.csv could not be imported, the current catalog stays", e);
+        }
+    }
+}
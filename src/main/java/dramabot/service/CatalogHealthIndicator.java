@@ -0,0 +1,32 @@
+package dramabot.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Health "catalog": UP with version and rows once a catalog is published, OUT_OF_SERVICE while the first catalog
+ * loads or if that load failed. It is only part of the readiness group, so slack traffic only reaches pods with a
+ * catalog while the liveness probe never restarts a pod for it. Why a load failed is logged, not exposed here.
+ */
+@Component
+public class CatalogHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private CatalogManager catalogManager;
+
+    @Override
+    public Health health() {
+        CatalogManager.LoadState state = catalogManager.getLoadState();
+        if (CatalogManager.LoadState.READY == state) {
+            CatalogSnapshot snapshot = catalogManager.getSnapshot();
+            return Health.up().withDetail("state", "ready").withDetail("version", snapshot.getVersion())
+                    .withDetail("rows", snapshot.size()).build();
+        }
+        if (CatalogManager.LoadState.FAILED == state) {
+            return Health.outOfService().withDetail("state", "failed").build();
+        }
+        return Health.outOfService().withDetail("state", "loading").build();
+    }
+}
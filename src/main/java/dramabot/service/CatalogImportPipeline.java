@@ -0,0 +1,240 @@
+package dramabot.service;
+
+import com.opencsv.bean.CsvToBean;
+import dramabot.hibernate.bootstrap.model.CatalogEntry;
+import dramabot.service.model.CatalogEntryBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams a catalog csv into a {@link ChunkWriter} in three overlapping stages: one thread parses the file lazily,
+ * several threads validate the rows against the column limits of {@link CatalogEntry} and the calling thread writes
+ * them in chunks. The stages are connected by bounded queues, so the heap needed does not grow with the file size.
+ * <p>
+ * Rows carry their number in the file through the validators, which finish them in any order; the writer restores
+ * the order of the file, so the ids of the entries follow the rows of the csv.
+ */
+public class CatalogImportPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogImportPipeline.class);
+
+    // end markers and the value of a rejected row, compared by identity
+    private static final Row<CatalogEntryBean> END_OF_FILE = new Row<>(-1, null);
+    private static final Row<CatalogEntry> END_OF_VALIDATION = new Row<>(-1, null);
+    private static final CatalogEntry REJECTED = new CatalogEntry();
+
+    private final int queueCapacity;
+
+    private final int validators;
+
+    private final int chunkSize;
+
+    public CatalogImportPipeline(int queueCapacity, int validators, int chunkSize) {
+        this.queueCapacity = queueCapacity;
+        this.validators = validators;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Writes the entries of a chunk, called from the thread running {@link #run(Path, ChunkWriter)}.
+     */
+    @FunctionalInterface
+    public interface ChunkWriter {
+        void write(List<CatalogEntry> chunk);
+    }
+
+    /**
+     * Counts of one import.
+     */
+    public static class Result {
+
+        private final int read;
+
+        private final int rejected;
+
+        Result(int read, int rejected) {
+            this.read = read;
+            this.rejected = rejected;
+        }
+
+        public int getRead() {
+            return read;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+
+        public int getWritten() {
+            return read - rejected;
+        }
+    }
+
+    /**
+     * Imports the csv file and returns after the last chunk was written.
+     *
+     * @param csv    the catalog file
+     * @param writer gets the valid entries in chunks
+     * @return read and rejected rows
+     * @throws IOException          if the file could not be read, parsed or validated; the chunks written until
+     *                              then are not a complete catalog and have to be discarded by the caller
+     * @throws InterruptedException if the import was interrupted, nothing more will be written then
+     */
+    public Result run(Path csv, ChunkWriter writer) throws IOException, InterruptedException {
+        BlockingQueue<Row<CatalogEntryBean>> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Row<CatalogEntry>> validated = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger read = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService stages = Executors.newFixedThreadPool(validators + 1, new ThreadFactory() {
+            private final AtomicInteger number = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "catalog-import-" + number.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            Future<?> parser = stages.submit(() -> parse(csv, parsed, read));
+            List<Future<?>> validations = new ArrayList<>(validators);
+            for (int i = 0; i < validators; i++) {
+                validations.add(stages.submit(() -> validate(parsed, validated, rejected)));
+            }
+            writeChunks(validated, writer);
+            // validators first: if they all failed, the parser may still wait for room in the queue
+            for (Future<?> validation : validations) {
+                validation.get();
+            }
+            parser.get();
+        } catch (ExecutionException e) {
+            throw new IOException("could not parse " + csv, e.getCause());
+        } finally {
+            stages.shutdownNow();
+        }
+        return new Result(read.get(), rejected.get());
+    }
+
+    private Void parse(Path csv, BlockingQueue<Row<CatalogEntryBean>> parsed, AtomicInteger read)
+            throws IOException, InterruptedException {
+        try (Reader reader = Files.newBufferedReader(csv)) {
+            CsvToBean<CatalogEntryBean> csvToBean = CatalogManager.csvToBean(reader, CatalogEntryBean.class);
+            Iterator<CatalogEntryBean> beans = csvToBean.iterator();
+            while (beans.hasNext()) {
+                parsed.put(new Row<>(read.getAndIncrement(), beans.next()));
+            }
+        } finally {
+            // validators must finish even if parsing failed
+            for (int i = 0; i < validators; i++) {
+                parsed.put(END_OF_FILE);
+            }
+        }
+        return null;
+    }
+
+    private Void validate(BlockingQueue<Row<CatalogEntryBean>> parsed, BlockingQueue<Row<CatalogEntry>> validated,
+                          AtomicInteger rejected) throws InterruptedException {
+        try {
+            Row<CatalogEntryBean> row = parsed.take();
+            while (END_OF_FILE != row) {
+                CatalogEntryBean normalized = normalize(row.value);
+                if (isValid(normalized)) {
+                    validated.put(new Row<>(row.number,
+                            new CatalogEntry(normalized.getText(), normalized.getAuthor(), normalized.getType())));
+                } else {
+                    rejected.incrementAndGet();
+                    // the writer waits for every row number, also for the rejected ones
+                    validated.put(new Row<>(row.number, REJECTED));
+                }
+                row = parsed.take();
+            }
+        } finally {
+            validated.put(END_OF_VALIDATION);
+        }
+        return null;
+    }
+
+    /**
+     * The csv pads its values with spaces (" critica"), they are stored trimmed so the database can compare and
+     * index them as they are. A blank author or type is stored as null.
+     */
+    private static CatalogEntryBean normalize(CatalogEntryBean bean) {
+        String text = null != bean.getText() ? bean.getText().trim() : null;
+        return new CatalogEntryBean(text, trimToNull(bean.getAuthor()), trimToNull(bean.getType()));
+    }
+
+    private static String trimToNull(String value) {
+        String trimmed = null != value ? value.trim() : null;
+        return null != trimmed && !trimmed.isEmpty() ? trimmed : null;
+    }
+
+    private static boolean isValid(CatalogEntryBean bean) {
+        boolean valid = null != bean.getText() && CatalogEntry.TEXT_LENGTH >= bean.getText().length()
+                && (null == bean.getAuthor() || CatalogEntry.AUTHOR_LENGTH >= bean.getAuthor().length())
+                && (null == bean.getType() || CatalogEntry.TYPE_LENGTH >= bean.getType().length());
+        if (!valid) {
+            logger.warn("rejected catalog entry of author '{}' with type '{}', text or author or type is too long",
+                    bean.getAuthor(), bean.getType());
+        }
+        return valid;
+    }
+
+    private void writeChunks(BlockingQueue<Row<CatalogEntry>> validated, ChunkWriter writer)
+            throws InterruptedException {
+        List<CatalogEntry> chunk = new ArrayList<>(chunkSize);
+        // rows which overtook an earlier row in another validator, by row number
+        Map<Integer, CatalogEntry> early = new HashMap<>();
+        int next = 0;
+        int finishedValidators = 0;
+        while (finishedValidators < validators) {
+            Row<CatalogEntry> row = validated.take();
+            if (END_OF_VALIDATION == row) {
+                finishedValidators++;
+                continue;
+            }
+            early.put(row.number, row.value);
+            CatalogEntry entry = early.remove(next);
+            while (null != entry) {
+                next++;
+                if (REJECTED != entry) {
+                    chunk.add(entry);
+                    if (chunkSize <= chunk.size()) {
+                        writer.write(chunk);
+                        chunk = new ArrayList<>(chunkSize);
+                    }
+                }
+                entry = early.remove(next);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writer.write(chunk);
+        }
+    }
+
+    /**
+     * A value and the number of its row in the file, counted from 0.
+     */
+    private static final class Row<T> {
+
+        private final int number;
+
+        private final T value;
+
+        private Row(int number, T value) {
+            this.number = number;
+            this.value = value;
+        }
+    }
+}
@@ -8,40 +8,41 @@ import com.opencsv.bean.*;
 import com.opencsv.exceptions.CsvDataTypeMismatchException;
 import com.opencsv.exceptions.CsvException;
 import com.opencsv.exceptions.CsvRequiredFieldEmptyException;
-import com.slack.api.methods.MethodsClient;
-import com.slack.api.methods.SlackApiException;
-import com.slack.api.methods.request.usergroups.users.UsergroupsUsersListRequest;
-import com.slack.api.methods.response.usergroups.users.UsergroupsUsersListResponse;
-import dramabot.hibernate.bootstrap.model.CatalogEntry;
+import dramabot.HibernateConf;
 import dramabot.service.model.CatalogEntryBean;
 import dramabot.service.model.CsvBean;
 import dramabot.service.model.CsvTransfer;
-import dramabot.service.repository.CatalogRepository;
+import dramabot.service.repository.ReconcileResult;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PostConstruct;
 import java.io.*;
-import java.net.MalformedURLException;
 import java.net.URISyntaxException;
-import java.nio.channels.Channels;
-import java.nio.channels.FileChannel;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.attribute.FileAttribute;
-import java.nio.file.attribute.PosixFilePermission;
-import java.nio.file.attribute.PosixFilePermissions;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.List;
-import java.util.Set;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 @Service
 public class CatalogManager {
@@ -49,16 +50,58 @@ public class CatalogManager {
     private static final String CONFIG_PATH_NAME = "./config/";
     private static final String CATALOG_CSV = "catalog.csv";
     private static final String CONFIG_FILE_NAME = CONFIG_PATH_NAME + CATALOG_CSV;
-    private static final Path CONFIG_PATH = FileSystems.getDefault().getPath(CONFIG_FILE_NAME);
-    private static final Path MAGIC_CONFIG_PATH = FileSystems.getDefault().getPath(CATALOG_CSV);
+    static final Path CONFIG_PATH = FileSystems.getDefault().getPath(CONFIG_FILE_NAME);
+    static final Path MAGIC_CONFIG_PATH = FileSystems.getDefault().getPath(CATALOG_CSV);
     private static final Logger logger = LoggerFactory.getLogger(CatalogManager.class);
+    private static final int IMPORT_QUEUE_CAPACITY = 1000;
+    private static final int IMPORT_VALIDATORS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
 
     @Autowired
-    private CatalogRepository catalogRepository;
+    private CatalogStore catalogStore;
 
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private AdminGroupCache adminGroup;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${dramabot.catalog.max-download-bytes:10485760}")
+    private long maxDownloadBytes;
+
+    @Value("${dramabot.catalog.export-gzip:false}")
+    private boolean gzipExport;
+
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>(CatalogSnapshot.EMPTY);
+
+    // the last download which was imported, a later download of its url is conditional while it is in use
+    private final AtomicReference<CatalogDownload> lastDownload = new AtomicReference<>();
+
+    private final AtomicLong catalogVersion = new AtomicLong();
+
+    // SHA-256 of catalog.csv as it was after the last initialize()
+    private volatile String catalogHash;
+
+    private volatile LoadState loadState = LoadState.LOADING;
+
+    public enum DownloadResult {
+        UPDATED, UNCHANGED, FAILED
+    }
+
+    public enum LoadState {
+        LOADING, READY, FAILED
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("dramabot.catalog.rows", snapshot, current -> current.get().size())
+                .description("reply entries of the published catalog, without the alias rows").register(meterRegistry);
+        Gauge.builder("dramabot.catalog.version", snapshot, current -> current.get().getVersion())
+                .description("number of the catalog load which is published").register(meterRegistry);
+    }
+
     public List<String[]> readAll(Reader reader) throws IOException, CsvException {
         CSVParser parser = new CSVParserBuilder().withSeparator(';').withIgnoreQuotations(true).build();
         CSVReader csvReader = new CSVReaderBuilder(reader).withSkipLines(0).withCSVParser(parser).build();
@@ -79,19 +122,26 @@ public class CatalogManager {
 
     public <T extends CsvBean> List<T> csvBeanBuilder(Path path, Class<? extends T> clazz) throws IOException {
         CsvTransfer<T> csvTransfer = new CsvTransfer<>();
-        HeaderColumnNameMappingStrategy<T> ms = new HeaderColumnNameMappingStrategy<>();
-        ms.setType(clazz);
-
         Reader reader = Files.newBufferedReader(path);
-        CsvToBean<T> cb = new CsvToBeanBuilder<T>(reader).withSeparator(';').withIgnoreQuotations(true).withType(clazz)
-                .withMappingStrategy(ms).build();
+        CsvToBean<T> cb = csvToBean(reader, clazz);
 
         csvTransfer.setCsvList(cb.parse());
         reader.close();
         return csvTransfer.getCsvList();
     }
 
+    static <T extends CsvBean> CsvToBean<T> csvToBean(Reader reader, Class<? extends T> clazz) {
+        HeaderColumnNameMappingStrategy<T> ms = new HeaderColumnNameMappingStrategy<>();
+        ms.setType(clazz);
+        return new CsvToBeanBuilder<T>(reader).withSeparator(';').withIgnoreQuotations(true).withType(clazz)
+                .withMappingStrategy(ms).build();
+    }
+
     public List<CatalogEntryBean> readBeansFromFile() throws URISyntaxException, IOException {
+        return csvBeanBuilder(findCatalogPath(), CatalogEntryBean.class);
+    }
+
+    private Path findCatalogPath() throws URISyntaxException {
         Path path;
         if (!Files.isReadable(CONFIG_PATH)) {
             if (!Files.isReadable(MAGIC_CONFIG_PATH)) {
@@ -102,23 +152,26 @@ public class CatalogManager {
         } else {
             path = CONFIG_PATH;
         }
-        return csvBeanBuilder(path, CatalogEntryBean.class);
+        return path;
     }
 
     public List<CatalogEntryBean> getBeansFromDatabase() {
-        List<CatalogEntryBean> beans = new ArrayList<>();
-        Iterable<CatalogEntry> all = catalogRepository.findAll();
-        long size = all.spliterator().estimateSize();
-        if (0 >= size) {
-            logger.error("No entries found on database");
+        List<CatalogEntryBean> beans = catalogStore.findAll();
+        if (beans.isEmpty()) {
+            logger.error("No entries found in catalog store");
         }
-        all.forEach(x -> {
-            CatalogEntryBean entryBean = new CatalogEntryBean(x.getEntryText(), x.getEntryAuthor(), x.getEntryType());
-            beans.add(entryBean);
-        });
         return beans;
     }
 
+    /**
+     * The catalog as it was loaded by the last {@link #initialize()}. Reading it never touches the database.
+     *
+     * @return the current snapshot, {@link CatalogSnapshot#EMPTY} before the first initialization
+     */
+    public CatalogSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
     public boolean writeBeansFromDatabaseToCsv()
             throws CsvDataTypeMismatchException, CsvRequiredFieldEmptyException, IOException {
         return writeBeansToCatalogCsv(getBeansFromDatabase(), null);
@@ -146,16 +199,21 @@ public class CatalogManager {
 
     private <T extends CsvBean> boolean writeToFile(List<T> entryBeans, Path path, Class<? extends T> clazz)
             throws IOException, CsvDataTypeMismatchException, CsvRequiredFieldEmptyException {
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            return writeCsv(entryBeans, writer, clazz);
+        }
+    }
+
+    private <T extends CsvBean> boolean writeCsv(List<T> entryBeans, Writer writer, Class<? extends T> clazz)
+            throws CsvDataTypeMismatchException, CsvRequiredFieldEmptyException {
         boolean result;
         HeaderColumnNameMappingStrategy<T> ms = new HeaderColumnNameMappingStrategy<>();
         ms.setType(clazz);
 
-        Writer writer = Files.newBufferedWriter(path);
         StatefulBeanToCsv<T> beanToCsv = new StatefulBeanToCsvBuilder<T>(writer).withSeparator(';')
                 .withMappingStrategy(ms).withOrderedResults(true).build();
 
         beanToCsv.write(entryBeans);
-        writer.close();
         List<CsvException> capturedExceptions = beanToCsv.getCapturedExceptions();
         if (null != capturedExceptions && !capturedExceptions.isEmpty()) {
             logger.warn("there were {} exceptions thrown: {}", capturedExceptions.size(),
@@ -167,84 +225,311 @@ public class CatalogManager {
         return result;
     }
 
-    public boolean initialize()
+    /**
+     * Runs the first {@link #initialize()} on its own thread, so the application can start meanwhile. The
+     * {@link #getLoadState()} is READY as soon as a catalog is published, FAILED if the load ended without one.
+     *
+     * @return future completing with the result of {@link #initialize()}
+     */
+    public CompletableFuture<Boolean> initializeAsync() {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                boolean initialized = initialize();
+                if (CatalogSnapshot.EMPTY != snapshot.get()) {
+                    loadState = LoadState.READY;
+                } else {
+                    logger.error("no catalog was published, the application stays unready");
+                    loadState = LoadState.FAILED;
+                }
+                result.complete(initialized);
+            } catch (Exception e) {
+                // the caller logs the exception of the returned future
+                loadState = LoadState.FAILED;
+                result.completeExceptionally(e);
+            }
+        }, "catalog-init");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    public LoadState getLoadState() {
+        return loadState;
+    }
+
+    /**
+     * Imports catalog.csv again if its content differs from the catalog in use. The file is validated before the
+     * store is touched: it has to parse and no row may be rejected, otherwise the current catalog stays. Replies
+     * get the old snapshot until the new one is published.
+     *
+     * @return true if a new catalog was imported
+     */
+    public synchronized boolean reloadIfChanged()
             throws URISyntaxException, IOException, CsvDataTypeMismatchException, CsvRequiredFieldEmptyException {
-        List<CatalogEntryBean> beansFromFile = readBeansFromFile();
-        catalogRepository.deleteAll();
-        for (CatalogEntryBean catalogEntryBean : beansFromFile) {
-            CatalogEntry dbEntry = new CatalogEntry(catalogEntryBean.getText(), catalogEntryBean.getAuthor(),
-                    catalogEntryBean.getType());
-            catalogRepository.save(dbEntry);
+        Path path = findCatalogPath();
+        if (ChecksumUtils.sha256(path).equals(catalogHash)) {
+            logger.debug("{} has the content of the catalog in use", path);
+            meterRegistry.counter("dramabot.catalog.reload", "result", "unchanged").increment();
+            return false;
+        }
+        CatalogImportPipeline.Result validation;
+        try {
+            validation = new CatalogImportPipeline(IMPORT_QUEUE_CAPACITY, IMPORT_VALIDATORS,
+                    HibernateConf.JDBC_BATCH_SIZE).run(path, chunk -> {
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (IOException e) {
+            logger.warn("changed {} could not be parsed, the current catalog stays: {}", path, e.getMessage());
+            meterRegistry.counter("dramabot.catalog.reload", "result", "invalid").increment();
+            return false;
         }
-        catalogRepository.flush();
-        int size = beansFromFile.size();
-        long count = catalogRepository.count();
+        if (0 == validation.getWritten() || 0 < validation.getRejected()) {
+            logger.warn("changed {} has {} valid and {} rejected entries, the current catalog stays", path,
+                    validation.getWritten(), validation.getRejected());
+            meterRegistry.counter("dramabot.catalog.reload", "result", "invalid").increment();
+            return false;
+        }
+        logger.info("{} changed, importing {} entries", path, validation.getWritten());
+        boolean result = initialize();
+        if (CatalogSnapshot.EMPTY != snapshot.get()) {
+            loadState = LoadState.READY;
+        }
+        meterRegistry.counter("dramabot.catalog.reload", "result", "imported").increment();
+        return result;
+    }
+
+    /**
+     * Imports catalog.csv into the store and publishes the new snapshot. If the store was built from a file with the
+     * same content, e.g. by the run before a restart with a persistent database, nothing is imported.
+     *
+     * @return false if the catalog could not be imported completely
+     */
+    public synchronized boolean initialize()
+            throws URISyntaxException, IOException, CsvDataTypeMismatchException, CsvRequiredFieldEmptyException {
+        Path path = findCatalogPath();
+        String sourceHash = ChecksumUtils.sha256(path);
+        if (sourceHash.equals(catalogStore.getImportedChecksum())) {
+            if (CatalogSnapshot.EMPTY == snapshot.get()) {
+                List<CatalogEntryBean> beans = getBeansFromDatabase();
+                snapshot.set(CatalogSnapshot.of(beans, createExport(beans)));
+            }
+            catalogHash = sourceHash;
+            logger.info("{} matches the stored catalog, import skipped", path);
+            meterRegistry.counter("dramabot.catalog.initialize.skipped").increment();
+            return true;
+        }
+        CatalogImportPipeline pipeline = new CatalogImportPipeline(IMPORT_QUEUE_CAPACITY, IMPORT_VALIDATORS,
+                HibernateConf.JDBC_BATCH_SIZE);
+        long start = System.nanoTime();
+        CatalogImportPipeline.Result importResult;
+        boolean changed;
+        CatalogStore.CatalogImport catalogImport = catalogStore.startImport();
+        try {
+            try {
+                importResult = pipeline.run(path, catalogImport);
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                // a partial catalog must never replace the stored one
+                catalogImport.abort();
+                throw e;
+            }
+            ReconcileResult reconcileResult = catalogImport.finish();
+            changed = !reconcileResult.isUnchanged();
+            logger.info("imported catalog: {} entries inserted, {} deleted", reconcileResult.getInserted(),
+                    reconcileResult.getDeleted());
+        } catch (InterruptedException e) {
+            logger.warn("import of {} was interrupted", path);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        long nanos = System.nanoTime() - start;
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        meterRegistry.timer("dramabot.catalog.initialize", "changed", String.valueOf(changed))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        meterRegistry.summary("dramabot.catalog.initialize.rows", "outcome", "written").record(importResult.getWritten());
+        meterRegistry.summary("dramabot.catalog.initialize.rows", "outcome", "rejected").record(importResult.getRejected());
+        int size = importResult.getWritten();
+        long count = catalogStore.count();
         if (size != count) {
-            logger.error("There are {} entries on database but {} in csv-file", count, size);
+            logger.error("There are {} entries on database but {} in csv-file (import took {} ms)", count, size, millis);
         } else {
-            logger.info("{} entries written to database", count);
+            logger.info("{} entries written to database in {} ms", count, millis);
+        }
+        if (0 < importResult.getRejected()) {
+            logger.warn("{} of {} entries in {} were rejected", importResult.getRejected(), importResult.getRead(), path);
         }
-        return writeBeansToCatalogCsv(beansFromFile, CatalogEntryBean.class);
+        // the store is committed and matches the imported file, whether or not the file can be rewritten below
+        String importedHash = sourceHash;
+        boolean result;
+        if (!changed && CatalogSnapshot.EMPTY != snapshot.get()) {
+            logger.info("catalog unchanged, {} is not rewritten", CATALOG_CSV);
+            result = true;
+        } else {
+            List<CatalogEntryBean> beans = getBeansFromDatabase();
+            snapshot.set(CatalogSnapshot.of(beans, createExport(beans)));
+            if (!changed || 0 < importResult.getRejected()) {
+                // don't drop the rejected rows from the file, somebody has to fix them
+                result = 0 == importResult.getRejected();
+            } else {
+                result = writeBeansToCatalogCsv(beans, CatalogEntryBean.class);
+                if (result) {
+                    // the file now holds exactly the stored catalog
+                    importedHash = ChecksumUtils.sha256(path);
+                }
+            }
+        }
+        catalogHash = importedHash;
+        if (0 == importResult.getRejected()) {
+            // a file with rejected rows is imported again next time, its problems are logged again
+            catalogStore.setImportedChecksum(importedHash);
+        }
+        return result;
     }
 
-    public boolean updateCatalog(String catalogUrl) {
-        boolean result = true;
-        try {
-            Path path = null;
-            if (Files.isWritable(CONFIG_PATH)) {
-                path = CONFIG_PATH;
-            } else if (Files.isWritable(MAGIC_CONFIG_PATH)) {
-                path = MAGIC_CONFIG_PATH;
+    private CatalogExport createExport(List<CatalogEntryBean> beans)
+            throws IOException, CsvDataTypeMismatchException, CsvRequiredFieldEmptyException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(gzipExport ? new GZIPOutputStream(bytes) : bytes,
+                StandardCharsets.UTF_8)) {
+            if (!writeCsv(beans, writer, CatalogEntryBean.class)) {
+                logger.warn("export of catalog is incomplete");
             }
-            if (null != path) {
-                File file = restTemplate.execute(catalogUrl, HttpMethod.GET, null, clientHttpResponse -> {
-                    FileAttribute<Set<PosixFilePermission>> attr = PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------"));
-                    File ret = Files.createTempFile("downloadCatalog", "tmp", attr).toFile();
-                    StreamUtils.copy(clientHttpResponse.getBody(), new FileOutputStream(ret));
-                    return ret;
-                });
-                if (null != file) {
-                    writeFile(path, file);
-                } else {
-                    logger.warn("file {} not downloaded", catalogUrl);
-                    result = false;
+        }
+        CatalogExport export = new CatalogExport(catalogVersion.incrementAndGet(), bytes.toByteArray(), gzipExport);
+        logger.info("catalog version {} exported with {} bytes", export.getVersion(), export.getContent().length);
+        return export;
+    }
+
+    /**
+     * Downloads a catalog into a temp file next to catalog.csv and replaces catalog.csv with an atomic move. If the
+     * catalog in use was imported from a download of the same url, the request is conditional. A download with the
+     * content of the catalog in use does not replace anything.
+     *
+     * @param catalogUrl   where to get the new catalog
+     * @param replacedWith gets the download which replaced catalog.csv, to be remembered once it is imported
+     * @return whether catalog.csv was replaced
+     */
+    DownloadResult updateCatalog(String catalogUrl, AtomicReference<CatalogDownload> replacedWith) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        DownloadResult result = downloadCatalog(catalogUrl, replacedWith);
+        sample.stop(meterRegistry.timer("dramabot.catalog.update", "result", result.name().toLowerCase(Locale.ROOT)));
+        return result;
+    }
+
+    private DownloadResult downloadCatalog(String catalogUrl, AtomicReference<CatalogDownload> replacedWith) {
+        Path path = null;
+        if (Files.isWritable(CONFIG_PATH)) {
+            path = CONFIG_PATH;
+        } else if (Files.isWritable(MAGIC_CONFIG_PATH)) {
+            path = MAGIC_CONFIG_PATH;
+        }
+        if (null == path) {
+            logger.error("Could not write config.csv. Is it writable?");
+            return DownloadResult.FAILED;
+        }
+        CatalogDownload previous = lastDownload.get();
+        // "not modified" only means unchanged if the catalog in use is still the one of that download
+        CatalogDownload conditional = null != previous && catalogUrl.equals(previous.getUrl())
+                && null != catalogHash && catalogHash.equals(previous.getCatalogHash()) ? previous : null;
+        Path directory = path.toAbsolutePath().getParent();
+        DownloadResult result;
+        try {
+            CatalogDownload download = restTemplate.execute(catalogUrl, HttpMethod.GET, request -> {
+                if (null != conditional && null != conditional.getEtag()) {
+                    request.getHeaders().set(HttpHeaders.IF_NONE_MATCH, conditional.getEtag());
                 }
+                if (null != conditional && null != conditional.getLastModified()) {
+                    request.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, conditional.getLastModified());
+                }
+            }, response -> {
+                if (HttpStatus.NOT_MODIFIED.value() == response.getRawStatusCode() && null != conditional) {
+                    return CatalogDownload.notModified(conditional);
+                }
+                return download(catalogUrl, response, directory);
+            });
+            if (null == download) {
+                logger.warn("file {} not downloaded", catalogUrl);
+                result = DownloadResult.FAILED;
+            } else if (null == download.getFile()) {
+                logger.info("catalog at {} was not modified", catalogUrl);
+                result = DownloadResult.UNCHANGED;
+            } else if (download.getHash().equals(catalogHash)) {
+                Files.deleteIfExists(download.getFile());
+                logger.info("catalog at {} has the same content as the current catalog", catalogUrl);
+                result = DownloadResult.UNCHANGED;
             } else {
-                logger.error("Could not write config.csv. Is it writable?");
-                result = false;
+                replaceAtomically(download.getFile(), path);
+                replacedWith.set(download.withoutFile());
+                result = DownloadResult.UPDATED;
             }
-        } catch (FileNotFoundException e) {
-            logger.warn("file not found for {}", catalogUrl);
-            result = false;
-        } catch (MalformedURLException e) {
-            logger.warn("malformed url {}", catalogUrl);
-            result = false;
+        } catch (RestClientException e) {
+            logger.warn("could not download {}: {}", catalogUrl, e.getMessage());
+            result = DownloadResult.FAILED;
         } catch (IOException e) {
             logger.warn("io-exception for {}", catalogUrl);
-            result = false;
+            result = DownloadResult.FAILED;
         }
         return result;
     }
 
-    private void writeFile(Path path, File file) throws IOException {
-        try (ReadableByteChannel readableByteChannel = Channels.newChannel(new FileInputStream(file));
-             FileOutputStream fileOutputStream = new FileOutputStream(path.toUri().getPath())) {
-                FileChannel fileChannel;
-                fileChannel = fileOutputStream.getChannel();
-                if (null != readableByteChannel) {
-                    fileChannel.transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
+    private CatalogDownload download(String catalogUrl, ClientHttpResponse response, Path directory) throws IOException {
+        HttpHeaders headers = response.getHeaders();
+        long contentLength = headers.getContentLength();
+        if (maxDownloadBytes < contentLength) {
+            throw new IOException("catalog has " + contentLength + " bytes, allowed are " + maxDownloadBytes);
+        }
+        Path temp = Files.createTempFile(directory, "downloadCatalog", ".tmp");
+        MessageDigest digest = ChecksumUtils.newDigest();
+        long size = 0;
+        try (InputStream in = new DigestInputStream(response.getBody(), digest);
+             OutputStream out = Files.newOutputStream(temp)) {
+            byte[] buffer = new byte[8192];
+            int read = in.read(buffer);
+            while (-1 != read) {
+                size += read;
+                if (maxDownloadBytes < size) {
+                    throw new IOException("catalog has more than the allowed " + maxDownloadBytes + " bytes");
                 }
+                out.write(buffer, 0, read);
+                read = in.read(buffer);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        meterRegistry.summary("dramabot.catalog.download.bytes").record(size);
+        return new CatalogDownload(catalogUrl, headers.getETag(), headers.getFirst(HttpHeaders.LAST_MODIFIED),
+                ChecksumUtils.hex(digest.digest()), temp);
+    }
+
+    private static void replaceAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            logger.warn("atomic move is not supported for {}, replacing it non-atomically", target);
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
-    public void updateCatalogInternal(String user, MethodsClient client, com.slack.api.model.File sharedFile, UsergroupsUsersListRequest request) throws IOException, SlackApiException {
-        UsergroupsUsersListResponse usergroupsUsersListResponse = client.usergroupsUsersList(request);
+    public void updateCatalogInternal(String user, com.slack.api.model.File sharedFile) throws IOException {
         String name = sharedFile.getName();
-        if (!"catalog.csv".equals(name) || !usergroupsUsersListResponse.isOk() ) {
+        if (!"catalog.csv".equals(name)) {
             logger.info("the file {} is not catalog.csv, so nothing was imported", name);
-        } else if (usergroupsUsersListResponse.getUsers().contains(user) && updateCatalog(sharedFile.getUrlPrivate())) {
+        } else if (!adminGroup.isAdminNow(user)) {
+            logger.warn("user {} is not allowed to update the catalog", user);
+        } else {
+            AtomicReference<CatalogDownload> download = new AtomicReference<>();
+            DownloadResult downloadResult = updateCatalog(sharedFile.getUrlPrivate(), download);
+            if (DownloadResult.UPDATED != downloadResult) {
+                logger.info("catalog.csv from user {} was not imported, download was {}", user, downloadResult);
+                return;
+            }
             try {
                 if (initialize()) {
+                    // only an imported download may answer later downloads of its url with "not modified"
+                    lastDownload.set(download.get().imported(catalogHash));
                     logger.info("updated catalog.csv from user {}", user);
                 } else {
                     logger.warn("initializing beans from file to database failed");
@@ -252,8 +537,6 @@ public class CatalogManager {
             } catch (URISyntaxException | CsvDataTypeMismatchException | CsvRequiredFieldEmptyException e) {
                 logger.error("problem while reinitializing catalog: {}", e.getMessage());
             }
-        } else {
-            logger.warn("got error on response of usergroupuserlist-request: {}", usergroupsUsersListResponse.getError());
         }
     }
 
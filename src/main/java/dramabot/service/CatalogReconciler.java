@@ -0,0 +1,63 @@
+package dramabot.service;
+
+import dramabot.hibernate.bootstrap.model.CatalogEntry;
+import dramabot.service.repository.CatalogRepository;
+import dramabot.service.repository.ReconcileResult;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Writes only the rows of an import which are not stored yet. Rows are compared by
+ * {@link CatalogEntry#getRowHash()}, duplicates are counted. Not thread safe, it is meant to be the single
+ * writer stage of a {@link CatalogImportPipeline}. Commit and rollback are up to the transaction of the
+ * {@link JpaCatalogStore}.
+ */
+class CatalogReconciler implements CatalogStore.CatalogImport {
+
+    private final CatalogRepository catalogRepository;
+
+    private final Map<String, Deque<Long>> existing;
+
+    private int inserted;
+
+    CatalogReconciler(CatalogRepository catalogRepository) {
+        this.catalogRepository = catalogRepository;
+        this.existing = catalogRepository.findIdsByRowHash();
+    }
+
+    @Override
+    public void write(List<CatalogEntry> chunk) {
+        List<CatalogEntry> missing = new ArrayList<>();
+        for (CatalogEntry entry : chunk) {
+            Deque<Long> ids = existing.get(entry.getRowHash());
+            if (null != ids && !ids.isEmpty()) {
+                // same row is already there, keep it
+                ids.poll();
+            } else {
+                missing.add(entry);
+            }
+        }
+        if (!missing.isEmpty()) {
+            inserted += catalogRepository.insertAll(missing);
+        }
+    }
+
+    /**
+     * Deletes every stored row which was not part of the import.
+     *
+     * @return inserted and deleted rows
+     */
+    @Override
+    public ReconcileResult finish() {
+        List<Long> obsolete = existing.values().stream().flatMap(Collection::stream).collect(Collectors.toList());
+        int deleted = obsolete.isEmpty() ? 0 : catalogRepository.deleteByIds(obsolete);
+        existing.clear();
+        return new ReconcileResult(inserted, deleted);
+    }
+
+    @Override
+    public void abort() {
+        existing.clear();
+    }
+}
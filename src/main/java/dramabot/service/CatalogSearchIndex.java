@@ -0,0 +1,251 @@
+package dramabot.service;
+
+import dramabot.service.model.CatalogEntryBean;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index over the texts of the catalog, built with every {@link CatalogSnapshot}. Words are lower-cased
+ * and accent-folded ("perché" finds "perche"), a search word also finds the words it is a prefix of ("critic"
+ * finds "critica" and "critiche"). Results are ranked with BM25.
+ * <p>
+ * A search borrows its score accumulators from a small pool of the index, so they go away with the index when a
+ * new catalog is loaded; searches beyond the pool allocate their own.
+ */
+public final class CatalogSearchIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "il", "lo", "la", "le", "gli", "un", "una", "uno", "di", "da", "in", "con", "su", "per", "tra", "fra",
+            "del", "della", "dei", "delle", "degli", "al", "alla", "ai", "alle", "nel", "nella", "che", "non", "ti",
+            "mi", "si", "ci", "ne", "e", "o", "a", "i"));
+
+    // prefixes matching more words are cut off, the search stays fast for short words
+    private static final int MAX_EXPANSIONS = 64;
+
+    // enough for the usual concurrent replies, more accumulators would only hold memory
+    private static final int POOLED_SCRATCHES = 4;
+
+    private static final float K1 = 1.2f;
+
+    private static final float B = 0.75f;
+
+    private final CatalogEntryBean[] beans;
+
+    // lower-cased, trimmed author and type of every entry, for the filters
+    private final String[] authors;
+
+    private final String[] types;
+
+    private final String[] terms;
+
+    private final int[][] postings;
+
+    private final int[][] frequencies;
+
+    private final float[] lengthNorms;
+
+    private final BlockingQueue<Scratch> scratches = new ArrayBlockingQueue<>(POOLED_SCRATCHES);
+
+    private CatalogSearchIndex(CatalogEntryBean[] beans, String[] authors, String[] types, String[] terms,
+                               int[][] postings, int[][] frequencies, float[] lengthNorms) {
+        this.beans = beans;
+        this.authors = authors;
+        this.types = types;
+        this.terms = terms;
+        this.postings = postings;
+        this.frequencies = frequencies;
+        this.lengthNorms = lengthNorms;
+    }
+
+    /**
+     * @param entries the reply entries, aliases excluded
+     * @return the index of the texts of the entries
+     */
+    static CatalogSearchIndex build(List<CatalogEntryBean> entries) {
+        int size = entries.size();
+        CatalogEntryBean[] beans = entries.toArray(new CatalogEntryBean[0]);
+        String[] authors = new String[size];
+        String[] types = new String[size];
+        int[] lengths = new int[size];
+        Map<String, Postings> index = new HashMap<>();
+        long totalLength = 0;
+        for (int doc = 0; doc < size; doc++) {
+            CatalogEntryBean bean = beans[doc];
+            authors[doc] = normalize(bean.getAuthor());
+            types[doc] = normalize(bean.getType());
+            Map<String, Integer> counts = new HashMap<>();
+            for (String word : tokenize(bean.getText())) {
+                counts.merge(word, 1, Integer::sum);
+                lengths[doc]++;
+            }
+            totalLength += lengths[doc];
+            int finalDoc = doc;
+            counts.forEach((word, count) -> index.computeIfAbsent(word, x -> new Postings()).add(finalDoc, count));
+        }
+        String[] terms = index.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        int[][] postings = new int[terms.length][];
+        int[][] frequencies = new int[terms.length][];
+        for (int i = 0; i < terms.length; i++) {
+            Postings termPostings = index.get(terms[i]);
+            postings[i] = Arrays.copyOf(termPostings.docs, termPostings.size);
+            frequencies[i] = Arrays.copyOf(termPostings.frequencies, termPostings.size);
+        }
+        float averageLength = 0 < size ? (float) totalLength / size : 1f;
+        float[] lengthNorms = new float[size];
+        for (int doc = 0; doc < size; doc++) {
+            lengthNorms[doc] = K1 * (1 - B + B * lengths[doc] / Math.max(1f, averageLength));
+        }
+        return new CatalogSearchIndex(beans, authors, types, terms, postings, frequencies, lengthNorms);
+    }
+
+    /**
+     * @param query  the words to search, at least one has to be found
+     * @param author lower-cased author the entries must have, null for any
+     * @param type   lower-cased type the entries must have, null for any
+     * @param limit  maximum number of results
+     * @return the best matches, best first
+     */
+    public List<CatalogEntryBean> search(String query, String author, String type, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty() || 0 >= limit) {
+            return Collections.emptyList();
+        }
+        Scratch current = scratches.poll();
+        if (null == current) {
+            current = new Scratch(beans.length);
+        }
+        try {
+            for (String word : words) {
+                int first = Arrays.binarySearch(terms, word);
+                if (0 > first) {
+                    first = -first - 1;
+                }
+                for (int term = first; term < terms.length && term < first + MAX_EXPANSIONS
+                        && terms[term].startsWith(word); term++) {
+                    score(term, current);
+                }
+            }
+            return collect(current, author, type, limit);
+        } finally {
+            current.reset();
+            scratches.offer(current);
+        }
+    }
+
+    public int size() {
+        return beans.length;
+    }
+
+    private void score(int term, Scratch current) {
+        int[] docs = postings[term];
+        int[] tfs = frequencies[term];
+        float idf = (float) Math.log(1 + (beans.length - docs.length + 0.5) / (docs.length + 0.5));
+        for (int i = 0; i < docs.length; i++) {
+            int doc = docs[i];
+            current.add(doc, idf * tfs[i] * (K1 + 1) / (tfs[i] + lengthNorms[doc]));
+        }
+    }
+
+    private List<CatalogEntryBean> collect(Scratch current, String author, String type, int limit) {
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, Comparator
+                .comparingDouble((Integer doc) -> current.scores[doc])
+                .thenComparing(doc -> -doc));
+        for (int i = 0; i < current.touchedCount; i++) {
+            int doc = current.touched[i];
+            if ((null == author || author.equals(authors[doc])) && (null == type || type.equals(types[doc]))) {
+                best.add(doc);
+                if (limit < best.size()) {
+                    best.poll();
+                }
+            }
+        }
+        CatalogEntryBean[] result = new CatalogEntryBean[best.size()];
+        for (int i = result.length - 1; 0 <= i; i--) {
+            result[i] = beans[best.poll()];
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * @return the text lower-cased, accent-folded and trimmed, null for null
+     */
+    static String normalize(String text) {
+        if (null == text) {
+            return null;
+        }
+        return MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT).trim();
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (null == text) {
+            return words;
+        }
+        for (String word : NON_WORD.split(normalize(text))) {
+            if (!word.isEmpty() && !STOP_WORDS.contains(word)) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static final class Postings {
+
+        private int[] docs = new int[4];
+
+        private int[] frequencies = new int[4];
+
+        private int size;
+
+        private void add(int doc, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, 2 * size);
+                frequencies = Arrays.copyOf(frequencies, 2 * size);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+        }
+    }
+
+    /**
+     * Score accumulators of one search at a time, only the touched entries are reset after a search.
+     */
+    private static final class Scratch {
+
+        private final float[] scores;
+
+        private final int[] touched;
+
+        private int touchedCount;
+
+        private Scratch(int size) {
+            scores = new float[size];
+            touched = new int[size];
+        }
+
+        private void add(int doc, float score) {
+            if (0f == scores[doc]) {
+                touched[touchedCount++] = doc;
+            }
+            scores[doc] += score;
+        }
+
+        private void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                scores[touched[i]] = 0f;
+            }
+            touchedCount = 0;
+        }
+    }
+}
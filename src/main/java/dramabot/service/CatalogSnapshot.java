@@ -0,0 +1,160 @@
+package dramabot.service;
+
+import dramabot.service.model.CatalogEntryBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+import static dramabot.slack.SlackApp.*;
+
+/**
+ * Read-only view of the catalog, categorized by type and indexed by author alias. A snapshot is built once per
+ * catalog load and then shared by all reply threads, so it must never be modified after
+ * {@link #of(List, CatalogExport)} returned.
+ */
+public final class CatalogSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshot.class);
+
+    public static final CatalogSnapshot EMPTY = of(Collections.emptyList(), CatalogExport.EMPTY);
+
+    private final Map<String, List<CatalogEntryBean>> beansByType;
+
+    private final Map<String, List<CatalogEntryBean>> beansByAlias;
+
+    private final KeywordMatcher<ReplyCategory> keywordMatcher;
+
+    private final CatalogSearchIndex searchIndex;
+
+    private final CatalogExport export;
+
+    private final int size;
+
+    private CatalogSnapshot(Map<String, List<CatalogEntryBean>> beansByType,
+                            Map<String, List<CatalogEntryBean>> beansByAlias, CatalogSearchIndex searchIndex,
+                            CatalogExport export, int size) {
+        this.beansByType = beansByType;
+        this.beansByAlias = beansByAlias;
+        this.keywordMatcher = SlackManagerUtils.createKeywordMatcher(beansByAlias.keySet());
+        this.searchIndex = searchIndex;
+        this.export = export;
+        this.size = size;
+    }
+
+    /**
+     * Categorizes the given beans. Types and authors are compared trimmed, everything without a known type
+     * goes to {@link dramabot.slack.SlackApp#EVERYTHING_ELSE}.
+     * <p>
+     * Entries of type {@link dramabot.slack.SlackApp#ALIAS} are not replies: their text is another name of their
+     * author. Every author can be found by its own name and by all of its aliases, case insensitive. An alias of
+     * an author without entries finds nothing, it is logged and left out of the keywords.
+     *
+     * @param allBeans all entries of the catalog
+     * @param export   the same entries as csv file
+     * @return the immutable snapshot
+     */
+    public static CatalogSnapshot of(List<CatalogEntryBean> allBeans, CatalogExport export) {
+        Map<String, List<CatalogEntryBean>> types = new HashMap<>();
+        types.put(E_SE, new ArrayList<>());
+        types.put(CRITICA, new ArrayList<>());
+        types.put(FEEDBACK, new ArrayList<>());
+        types.put(EVERYTHING_ELSE, new ArrayList<>());
+        Map<String, List<CatalogEntryBean>> authors = new HashMap<>();
+        Map<String, String> aliases = new HashMap<>();
+        List<CatalogEntryBean> replies = new ArrayList<>(allBeans.size());
+        for (CatalogEntryBean catalogEntryBean : allBeans) {
+            String type = null != catalogEntryBean.getType() ? catalogEntryBean.getType().trim() : null;
+            String author = null != catalogEntryBean.getAuthor() ? catalogEntryBean.getAuthor().trim() : "";
+            if (ALIAS.equals(type)) {
+                String alias = null != catalogEntryBean.getText() ? catalogEntryBean.getText().trim() : "";
+                if (!alias.isEmpty() && !author.isEmpty()) {
+                    aliases.put(alias.toLowerCase(Locale.ROOT), author);
+                }
+                continue;
+            }
+            List<CatalogEntryBean> typeBeans = null != type ? types.get(type) : null;
+            if (null == typeBeans) {
+                typeBeans = types.get(EVERYTHING_ELSE);
+            }
+            typeBeans.add(catalogEntryBean);
+            if (!author.isEmpty()) {
+                authors.computeIfAbsent(author, x -> new ArrayList<>()).add(catalogEntryBean);
+            }
+            replies.add(catalogEntryBean);
+        }
+        Map<String, List<CatalogEntryBean>> authorIndex = new HashMap<>();
+        authors.forEach((author, beans) -> authorIndex.put(author.toLowerCase(Locale.ROOT), freeze(beans)));
+        Map<String, List<String>> unknownAuthors = new TreeMap<>();
+        aliases.forEach((alias, author) -> {
+            List<CatalogEntryBean> beans = authorIndex.get(author.toLowerCase(Locale.ROOT));
+            if (null != beans) {
+                authorIndex.putIfAbsent(alias, beans);
+            } else {
+                unknownAuthors.computeIfAbsent(author, x -> new ArrayList<>()).add(alias);
+            }
+        });
+        if (!unknownAuthors.isEmpty()) {
+            logger.warn("aliases of authors without entries are ignored, fill in the author of their entries: {}",
+                    unknownAuthors);
+        }
+        Map<String, List<CatalogEntryBean>> typeIndex = new HashMap<>();
+        types.forEach((type, beans) -> typeIndex.put(type, freeze(beans)));
+        return new CatalogSnapshot(Collections.unmodifiableMap(typeIndex), Collections.unmodifiableMap(authorIndex),
+                CatalogSearchIndex.build(replies), export, replies.size());
+    }
+
+    private static List<CatalogEntryBean> freeze(List<CatalogEntryBean> beans) {
+        return Collections.unmodifiableList(Arrays.asList(beans.toArray(new CatalogEntryBean[0])));
+    }
+
+    /**
+     * @param type one of {@link dramabot.slack.SlackApp#E_SE}, {@link dramabot.slack.SlackApp#CRITICA},
+     *             {@link dramabot.slack.SlackApp#FEEDBACK} or {@link dramabot.slack.SlackApp#EVERYTHING_ELSE}
+     * @return the entries of this type, never null
+     */
+    public List<CatalogEntryBean> getBeans(String type) {
+        return beansByType.getOrDefault(type, Collections.emptyList());
+    }
+
+    /**
+     * @param alias the lower-cased name or alias of an author
+     * @return the entries of this author, never null
+     */
+    public List<CatalogEntryBean> getBeansForAlias(String alias) {
+        return null != alias ? beansByAlias.getOrDefault(alias, Collections.emptyList()) : Collections.emptyList();
+    }
+
+    /**
+     * @return the author names and aliases of this catalog, the other keywords are in {@link KeywordRules}
+     */
+    public KeywordMatcher<ReplyCategory> getKeywordMatcher() {
+        return keywordMatcher;
+    }
+
+    /**
+     * @return full-text index over the texts of the reply entries
+     */
+    public CatalogSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    public CatalogExport getExport() {
+        return export;
+    }
+
+    /**
+     * @return number of the catalog load which produced this snapshot, 0 for {@link #EMPTY}
+     */
+    public long getVersion() {
+        return export.getVersion();
+    }
+
+    /**
+     * @return the number of reply entries; alias rows are not counted here, unlike in the totals of the import
+     * ("dramabot.catalog.initialize.rows"), which count every row of the file
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,59 @@
+package dramabot.service;
+
+import dramabot.service.model.CatalogEntryBean;
+import dramabot.service.repository.ReconcileResult;
+
+import java.util.List;
+
+/**
+ * Where {@link CatalogManager} keeps the imported catalog. {@code dramabot.catalog.store} selects the
+ * implementation: "jpa" (default) stores it with hibernate in H2, "memory" keeps it on the heap and needs no
+ * database at all.
+ */
+public interface CatalogStore {
+
+    /**
+     * Starts an import. The chunks written to the returned import become the stored catalog, completely when
+     * {@link CatalogImport#finish()} returned. The {@link #getImportedChecksum()} is forgotten, the stored catalog
+     * matches no file until the import is done.
+     *
+     * @return the writer of the import
+     */
+    CatalogImport startImport();
+
+    /**
+     * @return hex encoded SHA-256 of the catalog file the stored catalog was imported from, null if unknown
+     */
+    String getImportedChecksum();
+
+    /**
+     * @param checksum hex encoded SHA-256 of the catalog file the stored catalog now matches
+     */
+    void setImportedChecksum(String checksum);
+
+    /**
+     * @return all entries in the order of the import
+     */
+    List<CatalogEntryBean> findAll();
+
+    long count();
+
+    /**
+     * Single writer stage of a {@link CatalogImportPipeline}, not thread safe. Nothing of an import is visible
+     * before {@link #finish()}, all of its calls have to come from the thread which started it.
+     */
+    interface CatalogImport extends CatalogImportPipeline.ChunkWriter {
+
+        /**
+         * Completes the import, the written chunks replace the stored catalog at once.
+         *
+         * @return inserted and deleted rows compared to the catalog before the import
+         */
+        ReconcileResult finish();
+
+        /**
+         * Discards the written chunks, the stored catalog stays as it was before {@link #startImport()}.
+         */
+        void abort();
+    }
+}
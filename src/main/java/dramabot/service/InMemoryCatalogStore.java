@@ -0,0 +1,87 @@
+package dramabot.service;
+
+import dramabot.hibernate.bootstrap.model.CatalogEntry;
+import dramabot.service.model.CatalogEntryBean;
+import dramabot.service.repository.ReconcileResult;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * The catalog as list on the heap. Together with the auto-configurations excluded by the profile "in-memory"
+ * neither a DataSource nor hibernate is started.
+ */
+@Service
+@ConditionalOnProperty(name = "dramabot.catalog.store", havingValue = "memory")
+public class InMemoryCatalogStore implements CatalogStore {
+
+    private volatile List<CatalogEntryBean> entries = Collections.emptyList();
+
+    private volatile String importedChecksum;
+
+    @Override
+    public CatalogImport startImport() {
+        importedChecksum = null;
+        List<CatalogEntryBean> previous = entries;
+        return new CatalogImport() {
+
+            private final List<CatalogEntryBean> imported = new ArrayList<>(previous.size());
+
+            @Override
+            public void write(List<CatalogEntry> chunk) {
+                chunk.forEach(x -> imported.add(new CatalogEntryBean(x.getEntryText(), x.getEntryAuthor(), x.getEntryType())));
+            }
+
+            @Override
+            public ReconcileResult finish() {
+                Map<String, Integer> remaining = new HashMap<>();
+                previous.forEach(bean -> remaining.merge(rowHash(bean), 1, Integer::sum));
+                int inserted = 0;
+                for (CatalogEntryBean bean : imported) {
+                    String hash = rowHash(bean);
+                    Integer count = remaining.get(hash);
+                    if (null == count) {
+                        inserted++;
+                    } else if (1 == count) {
+                        remaining.remove(hash);
+                    } else {
+                        remaining.put(hash, count - 1);
+                    }
+                }
+                int deleted = remaining.values().stream().mapToInt(Integer::intValue).sum();
+                entries = Collections.unmodifiableList(imported);
+                return new ReconcileResult(inserted, deleted);
+            }
+
+            @Override
+            public void abort() {
+                imported.clear();
+            }
+        };
+    }
+
+    @Override
+    public String getImportedChecksum() {
+        return importedChecksum;
+    }
+
+    @Override
+    public void setImportedChecksum(String checksum) {
+        importedChecksum = checksum;
+    }
+
+    @Override
+    public List<CatalogEntryBean> findAll() {
+        return new ArrayList<>(entries);
+    }
+
+    @Override
+    public long count() {
+        return entries.size();
+    }
+
+    private static String rowHash(CatalogEntryBean bean) {
+        return CatalogEntry.rowHash(bean.getText(), bean.getAuthor(), bean.getType());
+    }
+}
@@ -0,0 +1,151 @@
+package dramabot.service;
+
+import dramabot.hibernate.bootstrap.model.CatalogEntry;
+import dramabot.hibernate.bootstrap.model.CatalogImportState;
+import dramabot.service.model.CatalogEntryBean;
+import dramabot.service.repository.CatalogImportStateRepository;
+import dramabot.service.repository.CatalogRepository;
+import dramabot.service.repository.ReconcileResult;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The catalog in the database, see {@link dramabot.HibernateConf}. The checksum of the imported file is stored
+ * with the entries, so with a persistent database (profile "persistent") it survives restarts. With
+ * {@code dramabot.catalog.cache.enabled=true} reads are served from the second-level cache, which is evicted when
+ * an import finishes.
+ */
+@Service
+@ConditionalOnProperty(name = "dramabot.catalog.store", havingValue = "jpa", matchIfMissing = true)
+public class JpaCatalogStore implements CatalogStore {
+
+    @Autowired
+    private CatalogRepository catalogRepository;
+
+    @Autowired
+    private CatalogImportStateRepository importStateRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${dramabot.catalog.reconcile:true}")
+    private boolean reconcileCatalog;
+
+    /**
+     * Runs the whole import in one transaction: deleting, inserting and the import state are committed together by
+     * {@link CatalogImport#finish()} or rolled back by {@link CatalogImport#abort()}.
+     */
+    @Override
+    public CatalogImport startImport() {
+        TransactionStatus transaction = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        CatalogImport catalogImport;
+        try {
+            setImportedChecksum(null);
+            catalogImport = reconcileCatalog ? new CatalogReconciler(catalogRepository) : replacingImport();
+        } catch (RuntimeException e) {
+            transactionManager.rollback(transaction);
+            throw e;
+        }
+        return new CatalogImport() {
+
+            @Override
+            public void write(List<CatalogEntry> chunk) {
+                catalogImport.write(chunk);
+            }
+
+            @Override
+            public ReconcileResult finish() {
+                ReconcileResult result;
+                try {
+                    result = catalogImport.finish();
+                } catch (RuntimeException e) {
+                    abort();
+                    throw e;
+                }
+                transactionManager.commit(transaction);
+                evictCache();
+                return result;
+            }
+
+            @Override
+            public void abort() {
+                catalogImport.abort();
+                if (!transaction.isCompleted()) {
+                    transactionManager.rollback(transaction);
+                }
+            }
+        };
+    }
+
+    private CatalogImport replacingImport() {
+        int deleted = (int) catalogRepository.count();
+        catalogRepository.deleteAllInBatch();
+        return new CatalogImport() {
+
+            private int inserted;
+
+            @Override
+            public void write(List<CatalogEntry> chunk) {
+                inserted += catalogRepository.insertAll(chunk);
+            }
+
+            @Override
+            public ReconcileResult finish() {
+                return new ReconcileResult(inserted, deleted);
+            }
+
+            @Override
+            public void abort() {
+                inserted = 0;
+            }
+        };
+    }
+
+    /**
+     * Drops the cached entries and query results as a whole once an import is committed, the next reads load the
+     * new catalog. Only {@link CatalogImport#finish()} evicts: an import which fails is rolled back, the database
+     * still holds what the cache holds.
+     */
+    private void evictCache() {
+        entityManagerFactory.getCache().evict(CatalogEntry.class);
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+    }
+
+    @Override
+    public String getImportedChecksum() {
+        return importStateRepository.findById(CatalogImportState.CATALOG).map(CatalogImportState::getChecksum)
+                .orElse(null);
+    }
+
+    @Override
+    public void setImportedChecksum(String checksum) {
+        importStateRepository.save(new CatalogImportState(CatalogImportState.CATALOG, checksum));
+    }
+
+    @Override
+    public List<CatalogEntryBean> findAll() {
+        List<CatalogEntryBean> beans = new ArrayList<>();
+        catalogRepository.findAll(Sort.by("id")).forEach(x ->
+                beans.add(new CatalogEntryBean(x.getEntryText(), x.getEntryAuthor(), x.getEntryType())));
+        return beans;
+    }
+
+    @Override
+    public long count() {
+        return catalogRepository.count();
+    }
+}
@@ -0,0 +1,182 @@
+package dramabot.service;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton over several keyword sets. All sets are searched in one pass over the text, the
+ * categories are ranked by the ordinal of their enum constant (lower ordinal wins).
+ * <p>
+ * Instances are immutable after construction and can be shared between threads.
+ *
+ * @param <E> the category type, at most 64 constants
+ */
+public final class KeywordMatcher<E extends Enum<E>> {
+
+    private static final int ROOT = 0;
+
+    private final E[] categories;
+
+    // goto function per state: sorted characters and their target states
+    private final char[][] transitionChars;
+    private final int[][] transitionTargets;
+
+    private final int[] failure;
+
+    // bitmask of category ordinals whose keywords end in this state (including via failure links)
+    private final long[] output;
+
+    // the keyword ending exactly in this state and the categories it belongs to
+    private final String[] keywordAt;
+    private final long[] ownOutput;
+
+    /**
+     * Compiles the given keywords. Matching is case insensitive, keywords are lower-cased here.
+     *
+     * @param type     the enum class of the categories
+     * @param keywords keywords per category, categories without keywords never match
+     */
+    public KeywordMatcher(Class<E> type, Map<E, String[]> keywords) {
+        this.categories = type.getEnumConstants();
+        if (64 < categories.length) {
+            throw new IllegalArgumentException("at most 64 categories are supported, " + type + " has " + categories.length);
+        }
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<Long> outputs = new ArrayList<>();
+        List<String> words = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        outputs.add(0L);
+        words.add(null);
+        for (Map.Entry<E, String[]> entry : keywords.entrySet()) {
+            long bit = 1L << entry.getKey().ordinal();
+            for (String keyword : entry.getValue()) {
+                if (null == keyword || keyword.isEmpty()) {
+                    continue;
+                }
+                String word = keyword.toLowerCase(Locale.ROOT);
+                int state = ROOT;
+                for (char c : word.toCharArray()) {
+                    Integer next = trie.get(state).get(c);
+                    if (null == next) {
+                        next = trie.size();
+                        trie.add(new TreeMap<>());
+                        outputs.add(0L);
+                        words.add(null);
+                        trie.get(state).put(c, next);
+                    }
+                    state = next;
+                }
+                outputs.set(state, outputs.get(state) | bit);
+                words.set(state, word);
+            }
+        }
+        int states = trie.size();
+        transitionChars = new char[states][];
+        transitionTargets = new int[states][];
+        failure = new int[states];
+        output = new long[states];
+        keywordAt = words.toArray(new String[0]);
+        ownOutput = new long[states];
+        for (int state = 0; state < states; state++) {
+            Map<Character, Integer> transitions = trie.get(state);
+            transitionChars[state] = new char[transitions.size()];
+            transitionTargets[state] = new int[transitions.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+                transitionChars[state][i] = transition.getKey();
+                transitionTargets[state][i] = transition.getValue();
+                i++;
+            }
+            output[state] = outputs.get(state);
+            ownOutput[state] = output[state];
+        }
+        // breadth first, so failure links of shorter prefixes are known before they are needed
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int target : transitionTargets[ROOT]) {
+            failure[target] = ROOT;
+            queue.add(target);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < transitionChars[state].length; i++) {
+                char c = transitionChars[state][i];
+                int target = transitionTargets[state][i];
+                failure[target] = step(failure[state], c);
+                output[target] |= output[failure[target]];
+                queue.add(target);
+            }
+        }
+    }
+
+    private int next(int state, char c) {
+        int index = Arrays.binarySearch(transitionChars[state], c);
+        return 0 <= index ? transitionTargets[state][index] : -1;
+    }
+
+    private int step(int state, char c) {
+        int current = state;
+        int target = next(current, c);
+        while (0 > target && ROOT != current) {
+            current = failure[current];
+            target = next(current, c);
+        }
+        return 0 <= target ? target : ROOT;
+    }
+
+    /**
+     * Scans the text once and collects every category with at least one keyword in it.
+     *
+     * @param text the text to search, may be null
+     * @return bitmask of the ordinals of all matching categories
+     */
+    public long matches(String text) {
+        long found = 0L;
+        if (null == text) {
+            return found;
+        }
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, Character.toLowerCase(text.charAt(i)));
+            found |= output[state];
+            if (0 != (found & 1L)) {
+                // nothing can outrank the first category
+                break;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Scans the text once and returns the first keyword of the given category, i.e. the one ending first.
+     *
+     * @param text     the text to search, may be null
+     * @param category the category of the wanted keyword
+     * @return the lower-cased keyword, null if no keyword of this category was found
+     */
+    public String firstKeyword(String text, E category) {
+        if (null == text) {
+            return null;
+        }
+        long bit = 1L << category.ordinal();
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, Character.toLowerCase(text.charAt(i)));
+            if (0 != (output[state] & bit)) {
+                // the keyword ends here or in one of the suffixes reachable by failure links
+                int candidate = state;
+                while (0 == (ownOutput[candidate] & bit)) {
+                    candidate = failure[candidate];
+                }
+                return keywordAt[candidate];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param found bitmask of {@link #matches(String)}, also or-ed with those of other matchers of the same categories
+     * @return the category with the highest priority in the bitmask, null if it is empty
+     */
+    public E first(long found) {
+        return 0L == found ? null : categories[Long.numberOfTrailingZeros(found)];
+    }
+}
@@ -0,0 +1,99 @@
+package dramabot.service;
+
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.exceptions.CsvException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * The keywords which classify a payload, compiled from a rules file with the header {@code "CATEGORY";"KEYWORD"}.
+ * The category is the name of a {@link ReplyCategory} in any case, keywords keep their spaces (" amo" does not
+ * match "ramo"). Author aliases are no rules, they come with the catalog.
+ * <p>
+ * Instances are immutable, a reply keeps using the rules it started with while a new version is swapped in.
+ */
+public final class KeywordRules {
+
+    private static final String[] HEADER = {"CATEGORY", "KEYWORD"};
+
+    private final String version;
+
+    private final Map<ReplyCategory, List<String>> keywords;
+
+    private final KeywordMatcher<ReplyCategory> matcher;
+
+    private KeywordRules(String version, Map<ReplyCategory, List<String>> keywords) {
+        this.version = version;
+        this.keywords = keywords;
+        Map<ReplyCategory, String[]> arrays = new EnumMap<>(ReplyCategory.class);
+        keywords.forEach((category, words) -> arrays.put(category, words.toArray(new String[0])));
+        this.matcher = new KeywordMatcher<>(ReplyCategory.class, arrays);
+    }
+
+    /**
+     * @param reader  the rules file, not closed
+     * @param version the version of the file, e.g. its checksum
+     * @return the compiled rules
+     * @throws IllegalArgumentException if a line has no known category or no keyword
+     */
+    public static KeywordRules read(Reader reader, String version) throws IOException {
+        List<String[]> lines;
+        try {
+            CSVReader csvReader = new CSVReaderBuilder(reader)
+                    .withCSVParser(new CSVParserBuilder().withSeparator(';').build()).build();
+            lines = csvReader.readAll();
+        } catch (CsvException e) {
+            throw new IllegalArgumentException("rules file is not valid csv: " + e.getMessage(), e);
+        }
+        Map<ReplyCategory, List<String>> keywords = new EnumMap<>(ReplyCategory.class);
+        for (int i = 0; i < lines.size(); i++) {
+            String[] line = lines.get(i);
+            if ((0 == i && Arrays.equals(HEADER, line)) || (1 == line.length && line[0].trim().isEmpty())) {
+                continue;
+            }
+            if (2 != line.length || line[1].isEmpty()) {
+                throw new IllegalArgumentException("line " + (i + 1) + " of rules file needs a category and a keyword");
+            }
+            ReplyCategory category = category(line[0], i + 1);
+            keywords.computeIfAbsent(category, x -> new ArrayList<>()).add(line[1].toLowerCase(Locale.ROOT));
+        }
+        if (keywords.isEmpty()) {
+            throw new IllegalArgumentException("rules file has no keywords");
+        }
+        Map<ReplyCategory, List<String>> frozen = new EnumMap<>(ReplyCategory.class);
+        keywords.forEach((category, words) -> frozen.put(category, Collections.unmodifiableList(words)));
+        return new KeywordRules(version, Collections.unmodifiableMap(frozen));
+    }
+
+    private static ReplyCategory category(String name, int line) {
+        ReplyCategory category;
+        try {
+            category = ReplyCategory.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown category '" + name + "' in line " + line + " of rules file", e);
+        }
+        if (ReplyCategory.AUTHOR == category) {
+            throw new IllegalArgumentException("line " + line + " of rules file: authors are taken from the catalog");
+        }
+        return category;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the keywords of the category in the order of the rules file, never null
+     */
+    public List<String> getKeywords(ReplyCategory category) {
+        return keywords.getOrDefault(category, Collections.emptyList());
+    }
+
+    public KeywordMatcher<ReplyCategory> getMatcher() {
+        return matcher;
+    }
+}
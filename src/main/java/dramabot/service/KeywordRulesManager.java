@@ -0,0 +1,137 @@
+package dramabot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link KeywordRules}. They are read from config/keywords.csv next to the catalog, or from the
+ * classpath if there is no such file. The file is checked periodically, a changed content is compiled and swapped
+ * in at once; replies already running finish with the rules they started with. A file which does not compile is
+ * logged and the rules in use stay.
+ */
+@Service
+public class KeywordRulesManager {
+
+    private static final String KEYWORDS_CSV = "keywords.csv";
+    private static final Path CONFIG_PATH = FileSystems.getDefault().getPath("./config/" + KEYWORDS_CSV);
+    private static final Logger logger = LoggerFactory.getLogger(KeywordRulesManager.class);
+
+    private final AtomicReference<KeywordRules> rules = new AtomicReference<>();
+
+    private final long checkIntervalSeconds;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dramabot-keyword-rules");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public KeywordRulesManager(@Value("${dramabot.rules.check-interval-seconds:10}") long checkIntervalSeconds) {
+        this.checkIntervalSeconds = checkIntervalSeconds;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        try {
+            reload();
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("{} could not be compiled, using the rules of the classpath", CONFIG_PATH, e);
+            rules.set(defaults());
+        }
+        if (0 < checkIntervalSeconds) {
+            scheduler.scheduleWithFixedDelay(this::checkForChanges, checkIntervalSeconds, checkIntervalSeconds,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * @return the rules to use for one reply, never null once the application is started
+     */
+    public KeywordRules getRules() {
+        return rules.get();
+    }
+
+    /**
+     * Reads the rules file and swaps in its rules if its content changed.
+     *
+     * @return true if new rules are in use
+     * @throws IllegalArgumentException if the file does not compile, the rules in use stay
+     */
+    public boolean reload() throws IOException {
+        byte[] content = Files.isReadable(CONFIG_PATH) ? Files.readAllBytes(CONFIG_PATH) : readClasspath();
+        KeywordRules current = rules.get();
+        if (null != current && current.getVersion().equals(version(content))) {
+            return false;
+        }
+        KeywordRules compiled = compile(content);
+        rules.set(compiled);
+        logger.info("keyword rules version {} in use, previous was {}", compiled.getVersion(),
+                null != current ? current.getVersion() : "none");
+        return true;
+    }
+
+    /**
+     * @return the rules shipped on the classpath
+     */
+    static KeywordRules defaults() throws IOException {
+        return compile(readClasspath());
+    }
+
+    private void checkForChanges() {
+        try {
+            reload();
+        } catch (IOException | RuntimeException e) {
+            logger.error("keyword rules could not be reloaded, version {} stays in use", rules.get().getVersion(), e);
+        }
+    }
+
+    private static KeywordRules compile(byte[] content) throws IOException {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8)) {
+            return KeywordRules.read(reader, version(content));
+        }
+    }
+
+    private static String version(byte[] content) {
+        return ChecksumUtils.hex(ChecksumUtils.newDigest().digest(content)).substring(0, 12);
+    }
+
+    private static byte[] readClasspath() throws IOException {
+        try (InputStream in = KeywordRulesManager.class.getClassLoader().getResourceAsStream(KEYWORDS_CSV)) {
+            if (null == in) {
+                throw new IOException(KEYWORDS_CSV + " is not on the classpath");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read = in.read(buffer);
+            while (-1 != read) {
+                out.write(buffer, 0, read);
+                read = in.read(buffer);
+            }
+            return out.toByteArray();
+        }
+    }
+}
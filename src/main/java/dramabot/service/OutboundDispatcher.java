@@ -0,0 +1,305 @@
+package dramabot.service;
+
+import com.slack.api.methods.MethodsClient;
+import com.slack.api.methods.SlackApiException;
+import com.slack.api.methods.request.chat.ChatPostMessageRequest;
+import com.slack.api.methods.request.files.FilesUploadRequest;
+import com.slack.api.methods.response.chat.ChatPostMessageResponse;
+import com.slack.api.methods.response.files.FilesUploadResponse;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends all replies to slack. Calls are queued per channel and sent in order, one at a time per channel, as fast
+ * as the token buckets of the channel and of the api method allow. A call answered with 429 goes back to the head
+ * of its queue and channel and method are paused for Retry-After seconds.
+ * <p>
+ * At most {@code dramabot.outbound.max-pending} calls wait, at most {@code dramabot.outbound.channel-capacity} per
+ * channel. Calls beyond that, or throttled too often, fail with a {@link RejectedExecutionException} and are
+ * counted as "dramabot.outbound.dropped".
+ * <p>
+ * The calls are sent with the blocking {@link MethodsClient}, uploads on their own threads
+ * ({@code dramabot.outbound.upload-threads}), so a few slow uploads never stall the messages.
+ */
+@Service
+public class OutboundDispatcher {
+
+    public static final String CHAT_POST_MESSAGE = "chat.postMessage";
+
+    public static final String FILES_UPLOAD = "files.upload";
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundDispatcher.class);
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private static final long DEFAULT_RETRY_AFTER_SECONDS = 1L;
+
+    private final MethodsClient client;
+
+    private final MeterRegistry registry;
+
+    private final int maxPending;
+
+    private final int channelCapacity;
+
+    private final int maxAttempts;
+
+    private final double channelPerSecond;
+
+    private final double channelBurst;
+
+    // per api method: slow uploads must not hold up the messages of other channels
+    private final Map<String, ExecutorService> senders = new HashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    // guarded by this
+    private final Map<String, TokenBucket> methodBuckets = new HashMap<>();
+
+    // guarded by this, channels which were served last are at the end
+    private final LinkedHashMap<String, ChannelQueue> channels = new LinkedHashMap<>();
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // only touched by the scheduler thread
+    private ScheduledFuture<?> wakeUp;
+
+    public OutboundDispatcher(MethodsClient client, MeterRegistry registry,
+                              @Value("${dramabot.outbound.threads:4}") int threads,
+                              @Value("${dramabot.outbound.upload-threads:2}") int uploadThreads,
+                              @Value("${dramabot.outbound.max-pending:1000}") int maxPending,
+                              @Value("${dramabot.outbound.channel-capacity:50}") int channelCapacity,
+                              @Value("${dramabot.outbound.max-attempts:5}") int maxAttempts,
+                              @Value("${dramabot.outbound.chat-post-message-per-minute:100}") double chatPostMessagePerMinute,
+                              @Value("${dramabot.outbound.files-upload-per-minute:20}") double filesUploadPerMinute,
+                              @Value("${dramabot.outbound.method-burst:10}") double methodBurst,
+                              @Value("${dramabot.outbound.channel-per-second:1}") double channelPerSecond,
+                              @Value("${dramabot.outbound.channel-burst:3}") double channelBurst) {
+        this.client = client;
+        this.registry = registry;
+        this.maxPending = maxPending;
+        this.channelCapacity = channelCapacity;
+        this.maxAttempts = maxAttempts;
+        this.channelPerSecond = channelPerSecond;
+        this.channelBurst = channelBurst;
+        long now = System.nanoTime();
+        methodBuckets.put(CHAT_POST_MESSAGE, new TokenBucket(methodBurst, chatPostMessagePerMinute / 60d, now));
+        methodBuckets.put(FILES_UPLOAD, new TokenBucket(Math.min(methodBurst, filesUploadPerMinute), filesUploadPerMinute / 60d, now));
+        senders.put(CHAT_POST_MESSAGE, newSenders(threads, "dramabot-outbound-"));
+        senders.put(FILES_UPLOAD, newSenders(uploadThreads, "dramabot-outbound-upload-"));
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dramabot-outbound-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("dramabot.outbound.pending", pending, AtomicInteger::get)
+                .description("calls waiting to be sent to slack").register(registry);
+    }
+
+    public CompletableFuture<ChatPostMessageResponse> chatPostMessage(ChatPostMessageRequest request) {
+        return submit(CHAT_POST_MESSAGE, request.getChannel(), methodsClient -> methodsClient.chatPostMessage(request));
+    }
+
+    /**
+     * @param channel the channel the file is shared to, the request may list it among others
+     */
+    public CompletableFuture<FilesUploadResponse> filesUpload(String channel, FilesUploadRequest request) {
+        return submit(FILES_UPLOAD, channel, methodsClient -> methodsClient.filesUpload(request));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        senders.values().forEach(ExecutorService::shutdown);
+    }
+
+    private static ExecutorService newSenders(int threads, String namePrefix) {
+        AtomicInteger number = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(String method, String channel, SlackCall<T> call) {
+        OutboundCall<T> outbound = new OutboundCall<>(method, channel, call);
+        synchronized (this) {
+            ChannelQueue queue = channels.get(channel);
+            if (maxPending <= pending.get() || (null != queue && channelCapacity <= queue.calls.size())) {
+                drop(outbound, "overflow");
+                return outbound.future;
+            }
+            if (null == queue) {
+                queue = new ChannelQueue(new TokenBucket(channelBurst, channelPerSecond, System.nanoTime()));
+                channels.put(channel, queue);
+            }
+            queue.calls.addLast(outbound);
+            pending.incrementAndGet();
+        }
+        scheduler.execute(this::dispatch);
+        return outbound.future;
+    }
+
+    private void dispatch() {
+        long now = System.nanoTime();
+        long nextWake = Long.MAX_VALUE;
+        List<OutboundCall<?>> ready = new ArrayList<>();
+        synchronized (this) {
+            List<String> served = new ArrayList<>();
+            Iterator<Map.Entry<String, ChannelQueue>> entries = channels.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, ChannelQueue> entry = entries.next();
+                ChannelQueue queue = entry.getValue();
+                OutboundCall<?> head = queue.calls.peekFirst();
+                if (null == head) {
+                    if (!queue.inFlight && queue.bucket.isFull(now)) {
+                        entries.remove();
+                    }
+                    continue;
+                }
+                if (queue.inFlight) {
+                    continue;
+                }
+                TokenBucket methodBucket = methodBuckets.get(head.method);
+                long wait = Math.max(methodBucket.nanosUntilAvailable(now), queue.bucket.nanosUntilAvailable(now));
+                if (0 < wait) {
+                    nextWake = Math.min(nextWake, wait);
+                    continue;
+                }
+                methodBucket.take(now);
+                queue.bucket.take(now);
+                queue.calls.pollFirst();
+                queue.inFlight = true;
+                ready.add(head);
+                served.add(entry.getKey());
+            }
+            // round robin: the channels just served queue up behind the others
+            served.forEach(channel -> channels.put(channel, channels.remove(channel)));
+        }
+        if (null != wakeUp) {
+            wakeUp.cancel(false);
+            wakeUp = null;
+        }
+        if (Long.MAX_VALUE != nextWake) {
+            wakeUp = scheduler.schedule(this::dispatch, nextWake, TimeUnit.NANOSECONDS);
+        }
+        ready.forEach(call -> senders.get(call.method).execute(() -> send(call)));
+    }
+
+    private <T> void send(OutboundCall<T> call) {
+        try {
+            T response = call.call.call(client);
+            finish(call);
+            call.future.complete(response);
+        } catch (SlackApiException e) {
+            if (null != e.getResponse() && TOO_MANY_REQUESTS == e.getResponse().code()) {
+                retryLater(call, getRetryAfterSeconds(e));
+            } else {
+                finish(call);
+                call.future.completeExceptionally(e);
+            }
+        } catch (IOException | RuntimeException e) {
+            finish(call);
+            call.future.completeExceptionally(e);
+        }
+        if (!scheduler.isShutdown()) {
+            scheduler.execute(this::dispatch);
+        }
+    }
+
+    private synchronized void finish(OutboundCall<?> call) {
+        // a queue with a call in flight is never removed, the guard is for safety only
+        ChannelQueue queue = channels.get(call.channel);
+        if (null != queue) {
+            queue.inFlight = false;
+        }
+        pending.decrementAndGet();
+    }
+
+    private void retryLater(OutboundCall<?> call, long retryAfterSeconds) {
+        registry.counter("dramabot.outbound.throttled", "method", call.method).increment();
+        boolean retry;
+        synchronized (this) {
+            ChannelQueue queue = channels.get(call.channel);
+            retry = null != queue && maxAttempts > ++call.attempts;
+            if (null != queue) {
+                queue.inFlight = false;
+            }
+            if (retry) {
+                long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfterSeconds);
+                queue.bucket.blockUntil(until);
+                methodBuckets.get(call.method).blockUntil(until);
+                queue.calls.addFirst(call);
+            } else {
+                pending.decrementAndGet();
+            }
+        }
+        if (retry) {
+            logger.info("{} to {} was throttled, retry in {} s", call.method, call.channel, retryAfterSeconds);
+        } else {
+            drop(call, "retries");
+        }
+    }
+
+    private void drop(OutboundCall<?> call, String reason) {
+        registry.counter("dramabot.outbound.dropped", "method", call.method, "reason", reason).increment();
+        logger.warn("{} to {} dropped: {}", call.method, call.channel, reason);
+        call.future.completeExceptionally(new RejectedExecutionException(call.method + " to " + call.channel + " dropped: " + reason));
+    }
+
+    private static long getRetryAfterSeconds(SlackApiException e) {
+        String retryAfter = e.getResponse().header("Retry-After");
+        try {
+            return null != retryAfter ? Math.max(1L, Long.parseLong(retryAfter.trim())) : DEFAULT_RETRY_AFTER_SECONDS;
+        } catch (NumberFormatException nfe) {
+            return DEFAULT_RETRY_AFTER_SECONDS;
+        }
+    }
+
+    private interface SlackCall<T> {
+        T call(MethodsClient client) throws IOException, SlackApiException;
+    }
+
+    private static final class OutboundCall<T> {
+
+        private final String method;
+
+        private final String channel;
+
+        private final SlackCall<T> call;
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private int attempts;
+
+        private OutboundCall(String method, String channel, SlackCall<T> call) {
+            this.method = method;
+            this.channel = channel;
+            this.call = call;
+        }
+    }
+
+    private static final class ChannelQueue {
+
+        private final Deque<OutboundCall<?>> calls = new ArrayDeque<>();
+
+        private final TokenBucket bucket;
+
+        private boolean inFlight;
+
+        private ChannelQueue(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+}
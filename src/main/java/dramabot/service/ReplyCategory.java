@@ -0,0 +1,15 @@
+package dramabot.service;
+
+/**
+ * Categories a payload can be classified to. The order of the constants is the priority of the
+ * categories, the first one found in a payload wins.
+ */
+public enum ReplyCategory {
+    FEEDBACK,
+    CRITICA,
+    AUTHOR,
+    E_SE,
+    SOMETHING,
+    ME_TOO,
+    HELP
+}
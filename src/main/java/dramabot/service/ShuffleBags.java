@@ -0,0 +1,155 @@
+package dramabot.service;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Picks entries of a list in a random order which visits every entry once before any entry repeats. There is one
+ * bag per key (e.g. channel and category), at most {@code maxBags} of them.
+ * <p>
+ * A bag stores no permutation: each round draws random keys for a bijection of {@code [0, 2^bits)} and walks it,
+ * skipping the values outside the list. The first entry of a round is drawn on its own among all entries but the
+ * last one of the round before, so no entry is picked twice in a row, also not for lists of two or three entries
+ * where few bijections exist. Memory per bag is constant, a pick costs less than two steps on average and never
+ * takes a lock.
+ */
+final class ShuffleBags {
+
+    private final int maxBags;
+
+    private final ConcurrentHashMap<String, AtomicReference<Round>> bags = new ConcurrentHashMap<>();
+
+    ShuffleBags(int maxBags) {
+        this.maxBags = maxBags;
+    }
+
+    /**
+     * @param key     the bag, e.g. channel and category
+     * @param entries the entries to pick from, a new list (by identity) starts a new round
+     * @return index of the next entry, -1 if the list is empty
+     */
+    int next(String key, List<?> entries) {
+        int size = entries.size();
+        if (0 == size) {
+            return -1;
+        }
+        if (1 == size) {
+            return 0;
+        }
+        AtomicReference<Round> bag = bags.get(key);
+        if (null == bag) {
+            evictIfFull();
+            bag = bags.computeIfAbsent(key, x -> new AtomicReference<>(Round.start(entries, -1)));
+        }
+        while (true) {
+            Round round = bag.get();
+            if (round.entries != entries) {
+                bag.compareAndSet(round, Round.start(entries, -1));
+                continue;
+            }
+            int index = round.next();
+            if (0 <= index) {
+                round.last = index;
+                return index;
+            }
+            bag.compareAndSet(round, Round.start(entries, round.last));
+        }
+    }
+
+    int size() {
+        return bags.size();
+    }
+
+    private void evictIfFull() {
+        Iterator<String> keys = bags.keySet().iterator();
+        while (maxBags <= bags.size() && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static final class Round {
+
+        private final List<?> entries;
+
+        private final int size;
+
+        private final int first;
+
+        private final int mask;
+
+        private final int shift;
+
+        private final int multiplier;
+
+        private final int xor;
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        // last index returned by this round, only a hint for the next round
+        private volatile int last = -1;
+
+        private Round(List<?> entries, int first, int multiplier, int xor) {
+            this.entries = entries;
+            this.size = entries.size();
+            this.first = first;
+            int bits = 32 - Integer.numberOfLeadingZeros(size - 1);
+            this.mask = (1 << bits) - 1;
+            this.shift = Math.max(1, bits / 2);
+            this.multiplier = multiplier;
+            this.xor = xor;
+        }
+
+        /**
+         * @param previous the last index of the round before, which must not be the first of the new round, -1 for
+         *                 none
+         */
+        private static Round start(List<?> entries, int previous) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int size = entries.size();
+            int first;
+            if (0 <= previous && previous < size) {
+                // uniform among the other entries
+                first = random.nextInt(size - 1);
+                if (first >= previous) {
+                    first++;
+                }
+            } else {
+                first = random.nextInt(size);
+            }
+            return new Round(entries, first, random.nextInt() | 1, random.nextInt());
+        }
+
+        /**
+         * @return the next index of this round, -1 if every index was returned
+         */
+        private int next() {
+            while (true) {
+                int position = counter.getAndIncrement();
+                if (0 == position) {
+                    return first;
+                }
+                if (position > mask + 1 || 0 > position) {
+                    return -1;
+                }
+                // positions after the first walk the bijection, which returns the first entry once more
+                int index = permute(position - 1);
+                if (index < size && index != first) {
+                    return index;
+                }
+            }
+        }
+
+        // multiply by an odd number, xor and xorshift are bijections of [0, mask], so is their composition
+        private int permute(int position) {
+            int x = (position * multiplier) & mask;
+            x = (x ^ xor) & mask;
+            x ^= x >>> shift;
+            return (x * multiplier) & mask;
+        }
+    }
+}
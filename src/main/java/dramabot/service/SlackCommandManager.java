@@ -1,27 +1,16 @@
 package dramabot.service;
 
-import com.slack.api.Slack;
 import com.slack.api.app_backend.slash_commands.payload.SlashCommandPayload;
 import com.slack.api.bolt.handler.builtin.SlashCommandHandler;
-import com.slack.api.bolt.response.Response;
-import com.slack.api.methods.AsyncMethodsClient;
-import com.slack.api.methods.SlackApiException;
 import com.slack.api.methods.request.chat.ChatPostMessageRequest;
-import com.slack.api.methods.response.chat.ChatPostMessageResponse;
-import dramabot.service.model.CatalogEntryBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 
 @Service
@@ -29,34 +18,37 @@ public class SlackCommandManager {
 
     private static final Logger logger = LoggerFactory.getLogger(SlackCommandManager.class);
 
+    private static final String BUSY_TEXT = "Orpo, quanta gente! Riprova tra un attimo.";
+
     @Autowired
     private CatalogManager catalogManager;
 
+    @Autowired
+    private KeywordRulesManager keywordRulesManager;
+
     @Autowired
     public ExecutorService executorService;
 
+    @Autowired
+    private OutboundDispatcher outboundDispatcher;
+
+    @Autowired
+    private AdminGroupCache adminGroup;
+
     public SlashCommandHandler dramabotCommandHandler() {
         return (req, ctx) -> {
-            Response ack = ctx.ack();
-            executorService.execute(() -> {
-                try {
-                    createAsyncDramabotResponse(req);
-                } catch (ExecutionException e) {
-                    logger.warn("problem with asynchronous dramabot response", e);
-                } catch (InterruptedException e) {
-                    logger.warn("problem with asynchronous dramabot response: {}", e.getMessage());
-                    Thread.currentThread().interrupt();
-                }
-            });
-            return ack;
+            try {
+                executorService.execute(() -> createAsyncDramabotResponse(req));
+            } catch (RejectedExecutionException e) {
+                logger.warn("no capacity for /dramabot of user {}", req.getPayload().getUserId());
+                return ctx.ack(BUSY_TEXT);
+            }
+            return ctx.ack();
         };
     }
 
-    private void createAsyncDramabotResponse(com.slack.api.bolt.request.builtin.SlashCommandRequest req) throws ExecutionException, InterruptedException {
-        Slack slack = Slack.getInstance();
-        AsyncMethodsClient client = slack.methodsAsync(System.getenv("SLACK_BOT_TOKEN"));
-        Map<String, List<CatalogEntryBean>> authors = new HashMap<>();
-        Map<String, List<CatalogEntryBean>> allBeans = SlackManagerUtils.fillAuthorsAndReturnAllBeansWithDatabaseContent(authors, catalogManager);
+    private void createAsyncDramabotResponse(com.slack.api.bolt.request.builtin.SlashCommandRequest req) {
+        CatalogSnapshot catalog = catalogManager.getSnapshot();
         SlashCommandPayload payload = req.getPayload();
         String userId = payload.getUserId();
         String userName = payload.getUserName();
@@ -76,7 +68,7 @@ public class SlackCommandManager {
         logger.debug("In channel {} '{}' " + "was sent by {}. The text was '{}', with UserId: {} ChannelId:{}",
                 channelName, command, userName, payloadText, userId, channelId);
         if (!payloadText.toLowerCase(Locale.ROOT).contains("catalogo")) {
-            String responseType = SlackManagerUtils.appendPayload(authors, allBeans, payloadText,
+            String responseType = SlackManagerUtils.appendPayload(keywordRulesManager.getRules(), catalog, channelId, payloadText,
                     resultBuilder);
             logger.debug("the responseType of 'catalogo' should be {}, but we can just send a ChatPostMessageRequest to channel", responseType);
             logger.debug("starting StringBuilder.toString() for answer");
@@ -85,17 +77,15 @@ public class SlackCommandManager {
             String iconEmoji = payloadText.contains(" amo") ? ":heart:" : null;
             ChatPostMessageRequest asyncRequest = ChatPostMessageRequest.builder().text(text).channel(channelId)
                     .iconEmoji(iconEmoji).token(System.getenv("SLACK_BOT_TOKEN")).build();
-            CompletableFuture<ChatPostMessageResponse> postMessageResponseCompletableFuture = client.chatPostMessage(asyncRequest);
-            ChatPostMessageResponse chatPostMessageResponse = postMessageResponseCompletableFuture.get();
-            logger.debug("async reply with text was send - result was {}", chatPostMessageResponse.isOk() ? "ok" : chatPostMessageResponse.getErrors());
+            outboundDispatcher.chatPostMessage(asyncRequest).whenComplete((chatPostMessageResponse, throwable) -> {
+                if (null != throwable) {
+                    logger.warn("problem with asynchronous dramabot response", throwable);
+                } else {
+                    logger.debug("async reply with text was send - result was {}", chatPostMessageResponse.isOk() ? "ok" : chatPostMessageResponse.getErrors());
+                }
+            });
         } else {
-            try {
-                SlackManagerUtils.doCatalogCsvResponse(client, userId, channelId, System.getenv("SLACK_BOT_TOKEN"));
-            } catch (IOException | SlackApiException e) {
-                logger.debug("Error in /dramabot - command while searching for catalog", e);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+            SlackManagerUtils.doCatalogCsvResponse(outboundDispatcher, adminGroup, catalog.getExport(), userId, channelId, System.getenv("SLACK_BOT_TOKEN"));
         }
         logger.debug("");
     }
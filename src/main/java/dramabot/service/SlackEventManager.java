@@ -4,7 +4,6 @@ import com.slack.api.bolt.context.builtin.EventContext;
 import com.slack.api.bolt.handler.BoltEventHandler;
 import com.slack.api.bolt.response.Response;
 import com.slack.api.methods.MethodsClient;
-import com.slack.api.methods.SlackApiException;
 import com.slack.api.methods.request.chat.ChatPostMessageRequest;
 import com.slack.api.methods.request.files.FilesInfoRequest;
 import com.slack.api.methods.response.files.FilesInfoResponse;
@@ -15,7 +14,6 @@ import com.slack.api.model.block.ImageBlock;
 import com.slack.api.model.block.SectionBlock;
 import com.slack.api.model.event.*;
 import com.slack.api.model.view.View;
-import dramabot.service.model.CatalogEntryBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,9 +22,7 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 import static com.slack.api.model.block.Blocks.*;
@@ -42,18 +38,26 @@ public class SlackEventManager {
     @Autowired
     private CatalogManager catalogManager;
 
+    @Autowired
+    private KeywordRulesManager keywordRulesManager;
+
+    @Autowired
+    private AdminGroupCache adminGroup;
+
+    @Autowired
+    private OutboundDispatcher outboundDispatcher;
+
     public BoltEventHandler<AppMentionEvent> mentionEventHandler() {
         return (req, ctx) -> {
             AppMentionEvent event = req.getEvent();
-            Map<String, List<CatalogEntryBean>> authors = new HashMap<>();
-            Map<String, List<CatalogEntryBean>> allBeans = SlackManagerUtils.fillAuthorsAndReturnAllBeansWithDatabaseContent(authors, catalogManager);
+            CatalogSnapshot catalog = catalogManager.getSnapshot();
             String payloadText = event.getText();
             String username = event.getUsername();
             username = null == username ? "" : username;
             logger.debug("{} mentioned dramabot: {}", username, payloadText);
             StringBuilder resultBuilder = new StringBuilder();
             // default response in channel
-            String responseType = SlackManagerUtils.appendPayload(authors, allBeans, payloadText,
+            String responseType = SlackManagerUtils.appendPayload(keywordRulesManager.getRules(), catalog, event.getChannel(), payloadText,
                     resultBuilder);
             // egg 1
             String iconEmoji = payloadText.contains(" amo") ? ":heart:" : null;
@@ -64,14 +68,14 @@ public class SlackEventManager {
             }
             ChatPostMessageRequest reqq = ChatPostMessageRequest.builder().text(text).channel(event.getChannel())
                     .iconEmoji(iconEmoji).token(System.getenv("SLACK_BOT_TOKEN")).build();
-            ctx.asyncClient().chatPostMessage(reqq);
+            outboundDispatcher.chatPostMessage(reqq).whenComplete((chatPostMessageResponse, throwable) -> {
+                if (null != throwable) {
+                    logger.warn("problem with reply to mention", throwable);
+                }
+            });
 
             if (payloadText.contains("catalogo")) {
-                try {
-                    SlackManagerUtils.doCatalogCsvResponse(ctx.asyncClient(), event.getUser(), event.getChannel(), System.getenv("SLACK_BOT_TOKEN"));
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+                SlackManagerUtils.doCatalogCsvResponse(outboundDispatcher, adminGroup, catalog.getExport(), event.getUser(), event.getChannel(), System.getenv("SLACK_BOT_TOKEN"));
             }
             return ctx.ack();
         };
@@ -130,7 +134,7 @@ public class SlackEventManager {
             logger.info("shared file '{}' by user '{}'", name, user);
             if (name.contains("catalog.csv")) {
                 logger.info("file will be imported by messageFileSharedEvent, 'catalogo' has to be in message-text");
-                logger.info("the corresponding call should be updateCatalogInternal({}, {}, {})", user, client, sharedFile);
+                logger.info("the corresponding call should be updateCatalogInternal({}, {})", user, sharedFile);
             }
             logger.info("end of FileSharedEvent");
             return ctx.ack();
@@ -141,6 +145,17 @@ public class SlackEventManager {
         return FilesInfoRequest.builder().token(System.getenv("SLACK_BOT_TOKEN")).file(file.getId()).build();
     }
 
+    public BoltEventHandler<SubteamMembersChangedEvent> getSubteamMembersChanged() {
+        return (req, ctx) -> {
+            String subteamId = req.getEvent().getSubteamId();
+            if (adminGroup.getUsergroup().equals(subteamId)) {
+                logger.info("members of administrators group {} changed", subteamId);
+                adminGroup.invalidate();
+            }
+            return ctx.ack();
+        };
+    }
+
     public BoltEventHandler<MessageFileShareEvent> getMessageSharedFile() {
         return (req, ctx) -> {
             logger.info("there was a MessageFileShareEvent");
@@ -164,15 +179,11 @@ public class SlackEventManager {
 
             logger.info("end of MessageFileShareEvent");
             if (text.contains("catalogo")) {
-                MethodsClient client = ctx.client();
                     files.forEach(file -> {
                         try {
-                            catalogManager.updateCatalogInternal(user, client, file, SlackManagerUtils.createUsergroupsUsersListRequest(System.getenv("SLACK_BOT_TOKEN")));
+                            catalogManager.updateCatalogInternal(user, file);
                         } catch (IOException e) {
                             logger.info("io-problem while updating catalog");
-                        } catch (SlackApiException e) {
-                            logger.warn("slack-problem while updating catalog : {}", e.getMessage());
-                            logger.debug("full exception: ", e);
                         }
                     });
             }
@@ -1,43 +1,43 @@
 package dramabot.service;
 
-import com.slack.api.methods.AsyncMethodsClient;
-import com.slack.api.methods.SlackApiException;
-import com.slack.api.methods.request.usergroups.users.UsergroupsUsersListRequest;
-import com.slack.api.methods.response.files.FilesUploadResponse;
-import com.slack.api.methods.response.usergroups.users.UsergroupsUsersListResponse;
+import com.slack.api.methods.request.files.FilesUploadRequest;
 import dramabot.service.model.CatalogEntryBean;
 import dramabot.slack.SlackApp;
+import io.micrometer.core.instrument.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.file.FileSystems;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 import static dramabot.slack.SlackApp.*;
 
 public enum SlackManagerUtils {
     ;
-    private static final SecureRandom secureRandom = new SecureRandom();
+    // bags of channels and categories, a few per active channel
+    private static final int MAX_SHUFFLE_BAGS = 4096;
 
-    private static final Logger logger = LoggerFactory.getLogger(SlackCommandManager.class);
+    private static final ShuffleBags shuffleBags = new ShuffleBags(MAX_SHUFFLE_BAGS);
+
+    private static final String SEARCH_COMMAND = "cerca ";
+    private static final String SEARCH_AUTHOR = "autore:";
+    private static final String SEARCH_TYPE = "tipo:";
+    private static final int SEARCH_RESULTS = 5;
 
+    private static final Logger logger = LoggerFactory.getLogger(SlackCommandManager.class);
 
-    public static String appendPayload(Map<String, ? extends List<CatalogEntryBean>> authors, Map<String, ? extends List<CatalogEntryBean>> allBeans, String payloadText,
-                                       StringBuilder resultBuilder) {
+    /**
+     * @param rules   the keyword rules, taken once per reply
+     * @param channel replies in the same channel don't repeat an entry before all entries of its kind were used
+     */
+    public static String appendPayload(KeywordRules rules, CatalogSnapshot catalog, String channel, String payloadText, StringBuilder resultBuilder) {
         String responseType;
-        if (null != payloadText) {
-            responseType = getResponseTypeAndAppend(authors, allBeans, payloadText, resultBuilder);
+        if (null != payloadText && payloadText.trim().toLowerCase(Locale.ROOT).startsWith(SEARCH_COMMAND)) {
+            responseType = IN_CHANNEL;
+            appendSearchResults(catalog, payloadText.trim().substring(SEARCH_COMMAND.length()), resultBuilder);
+        } else if (null != payloadText) {
+            responseType = getResponseTypeAndAppend(rules, catalog, channel, payloadText, resultBuilder);
         } else {
             // if null don't post in channel but private
             responseType = EPHEMERAL;
@@ -48,85 +48,31 @@ public enum SlackManagerUtils {
         return responseType;
     }
 
-    public static Map<String, List<CatalogEntryBean>> fillAuthorsAndReturnAllBeansWithDatabaseContent(Map<? super String, List<CatalogEntryBean>> authors, CatalogManager catalogManager) {
-        List<CatalogEntryBean> eseBeans = new ArrayList<>();
-        List<CatalogEntryBean> criticaBeans = new ArrayList<>();
-        List<CatalogEntryBean> feedbackBeans = new ArrayList<>();
-        List<CatalogEntryBean> everythingElseBeans = new ArrayList<>();
-        List<CatalogEntryBean> allBeans = catalogManager.getBeansFromDatabase();
-        for (CatalogEntryBean catalogEntryBean : allBeans) {
-            if (null != catalogEntryBean.getType() && catalogEntryBean.getType().trim().equals(E_SE)) {
-                eseBeans.add(catalogEntryBean);
-            } else if (null != catalogEntryBean.getType() && catalogEntryBean.getType().trim().equals(CRITICA)) {
-                criticaBeans.add(catalogEntryBean);
-            } else if (null != catalogEntryBean.getType() && catalogEntryBean.getType().trim().equals(FEEDBACK)) {
-                feedbackBeans.add(catalogEntryBean);
-            } else {
-                everythingElseBeans.add(catalogEntryBean);
-            }
-            fillAuthorMap(authors, catalogEntryBean);
-        }
-        Map<String, List<CatalogEntryBean>> result = new HashMap<>();
-        result.put(E_SE, eseBeans);
-        result.put(CRITICA, criticaBeans);
-        result.put(FEEDBACK, feedbackBeans);
-        result.put(EVERYTHING_ELSE, everythingElseBeans);
-        return result;
-    }
-
-    private static void fillAuthorMap(Map<? super String, List<CatalogEntryBean>> authors, CatalogEntryBean catalogEntryBean) {
-        String author = catalogEntryBean.getAuthor();
-        if (null != author) {
-            List<CatalogEntryBean> beans = authors.get(author.trim());
-            if (null != beans) {
-                beans.add(catalogEntryBean);
-            } else {
-                List<CatalogEntryBean> newEntries = new ArrayList<>();
-                newEntries.add(catalogEntryBean);
-                authors.put(author.trim(), newEntries);
-            }
-        }
-    }
-
-
-    private static String getResponseTypeAndAppend(Map<String, ? extends List<CatalogEntryBean>> authorsMap, Map<String, ? extends List<CatalogEntryBean>> allBeans, String payloadText, StringBuilder resultBuilder) {
+    private static String getResponseTypeAndAppend(KeywordRules rules, CatalogSnapshot catalog, String channel, String payloadText, StringBuilder resultBuilder) {
         String responseType = IN_CHANNEL;
         logger.debug("create text for reply ");
-        Map<String, String[]> authorTranslations = new HashMap<>();
-        authorTranslations.put("gubiani", new String[]{"Anna", "Gubiani", "anute"});
-        authorTranslations.put("tollis", new String[]{"Giulia", "Tollis"});
-        authorTranslations.put("ursella", new String[]{"Stefania", "Ursella"});
-        authorTranslations.put("dipauli", new String[]{"Alessandro", "Pauli", "dipi"});
-        String[] allAuthors = authorTranslations.values().stream().flatMap(Arrays::stream).toArray(String[]::new);
-
-        String[] feedbackKeywords = {FEEDBACK, "vorrei", " pens", "pens", "secondo te"};
-        String[] criticKeywords = {"domanda", "critic", " devo ", " devi ", "devo ", "devi "};
-        String[] eseKeywords = {"capisc", "dubbi", "spiega", "caga", "aiut", "dire", "dici", "dimmi"};
-        String[] keywordsMeToo = {"ador", " amo", "amo"};
-
-        String[] helpCommands = {"theyellow", "il tedesco", "help", "bee", "stupid", "merda"};
-
-        List<CatalogEntryBean> eseBeans = allBeans.get(E_SE);
-        List<CatalogEntryBean> criticaBeans = allBeans.get(CRITICA);
-        List<CatalogEntryBean> feedbackBeans = allBeans.get(FEEDBACK);
-        List<CatalogEntryBean> everythingElseBeans = allBeans.get(EVERYTHING_ELSE);
-        logger.debug("beans categorized for random reply");
-        String something = "qualcosa";
-        if (containsOne(payloadText, feedbackKeywords)) {
-            appendRandomText(feedbackBeans, resultBuilder);
-        } else if (containsOne(payloadText, criticKeywords)) {
-            appendRandomText(criticaBeans, resultBuilder);
-        } else if (containsOne(payloadText, allAuthors)) {
-            List<CatalogEntryBean> beansForAuthor = getBeansForAuthor(authorsMap, authorTranslations, payloadText);
-            appendRandomText(beansForAuthor, resultBuilder);
-        } else if (containsOne(payloadText, eseKeywords)) {
-            appendRandomText(eseBeans, resultBuilder);
-        } else if (containsOne(payloadText, something)) {
-            appendRandomText(everythingElseBeans, resultBuilder);
-        } else if (containsOne(payloadText, keywordsMeToo)) {
+        // rules and author aliases are separate automatons, the lowest category found in either wins
+        long found = rules.getMatcher().matches(payloadText) | catalog.getKeywordMatcher().matches(payloadText);
+        ReplyCategory category = rules.getMatcher().first(found);
+        logger.debug("payload classified as {}", category);
+        Metrics.counter("dramabot.reply.category",
+                "category", null != category ? category.name().toLowerCase(Locale.ROOT) : "none").increment();
+        if (ReplyCategory.FEEDBACK == category) {
+            appendRandomText(channel + FEEDBACK, catalog.getBeans(FEEDBACK), resultBuilder);
+        } else if (ReplyCategory.CRITICA == category) {
+            appendRandomText(channel + CRITICA, catalog.getBeans(CRITICA), resultBuilder);
+        } else if (ReplyCategory.AUTHOR == category) {
+            List<CatalogEntryBean> beansForAuthor = getBeansForAuthor(catalog, payloadText);
+            String author = beansForAuthor.isEmpty() ? "" : beansForAuthor.get(0).getAuthor().trim();
+            appendRandomText(channel + ALIAS + author, beansForAuthor, resultBuilder);
+        } else if (ReplyCategory.E_SE == category) {
+            appendRandomText(channel + E_SE, catalog.getBeans(E_SE), resultBuilder);
+        } else if (ReplyCategory.SOMETHING == category) {
+            appendRandomText(channel + EVERYTHING_ELSE, catalog.getBeans(EVERYTHING_ELSE), resultBuilder);
+        } else if (ReplyCategory.ME_TOO == category) {
             resultBuilder.append("Anch'io!");
-        } else if (containsOne(payloadText, helpCommands)) {
-            appendCommands(resultBuilder, feedbackKeywords, criticKeywords, eseKeywords, keywordsMeToo);
+        } else if (ReplyCategory.HELP == category) {
+            appendCommands(rules, resultBuilder);
         }
         else {
             // if not found don't post in channel but private
@@ -138,33 +84,63 @@ public enum SlackManagerUtils {
         return responseType;
     }
 
-    private static void appendCommands(StringBuilder resultBuilder, String[] feedbackKeywords, String[] criticKeywords, String[] eseKeywords, String[] keywordsMeToo) {
+    /**
+     * Appends the best matches for "cerca &lt;parole&gt; [autore:&lt;nome&gt;] [tipo:&lt;tipo&gt;]". Types with a
+     * space are written with underscore, e.g. "tipo:e_se".
+     */
+    private static void appendSearchResults(CatalogSnapshot catalog, String arguments, StringBuilder resultBuilder) {
+        StringBuilder query = new StringBuilder();
+        String author = null;
+        String type = null;
+        for (String argument : arguments.trim().split("\\s+")) {
+            String lowerCase = argument.toLowerCase(Locale.ROOT);
+            if (lowerCase.startsWith(SEARCH_AUTHOR) && SEARCH_AUTHOR.length() < lowerCase.length()) {
+                String alias = lowerCase.substring(SEARCH_AUTHOR.length());
+                List<CatalogEntryBean> beans = catalog.getBeansForAlias(alias);
+                author = CatalogSearchIndex.normalize(beans.isEmpty() ? alias : beans.get(0).getAuthor());
+            } else if (lowerCase.startsWith(SEARCH_TYPE) && SEARCH_TYPE.length() < lowerCase.length()) {
+                type = CatalogSearchIndex.normalize(lowerCase.substring(SEARCH_TYPE.length()).replace('_', ' '));
+            } else {
+                query.append(argument).append(' ');
+            }
+        }
+        List<CatalogEntryBean> results = catalog.getSearchIndex().search(query.toString(), author, type, SEARCH_RESULTS);
+        logger.debug("search for '{}' (author {}, type {}) found {} entries", query, author, type, results.size());
+        if (results.isEmpty()) {
+            resultBuilder.append("Non ho trovato niente per '").append(query.toString().trim()).append("'.");
+            return;
+        }
+        resultBuilder.append("Ho trovato:");
+        for (CatalogEntryBean bean : results) {
+            resultBuilder.append("\n• ").append(bean.getText().trim());
+            String beanAuthor = null != bean.getAuthor() ? bean.getAuthor().trim() : "";
+            String beanType = null != bean.getType() ? bean.getType().trim() : "";
+            resultBuilder.append(" _(").append(beanAuthor.isEmpty() ? beanType : beanAuthor + ", " + beanType).append(")_");
+        }
+    }
+
+    static KeywordMatcher<ReplyCategory> createKeywordMatcher(Collection<String> authorAliases) {
+        Map<ReplyCategory, String[]> keywords = new EnumMap<>(ReplyCategory.class);
+        keywords.put(ReplyCategory.AUTHOR, authorAliases.toArray(new String[0]));
+        return new KeywordMatcher<>(ReplyCategory.class, keywords);
+    }
+
+    private static void appendCommands(KeywordRules rules, StringBuilder resultBuilder) {
         logger.debug("append commands to ");
         resultBuilder.append("\nComandi possibili: ");
         Consumer<String> stringTicksAround = x -> resultBuilder.append(TICK_IN).append(x).append(TICK_OUT);
-        Arrays.stream(feedbackKeywords).forEach(stringTicksAround);
-        Arrays.stream(criticKeywords).forEach(stringTicksAround);
-        Arrays.stream(eseKeywords).forEach(stringTicksAround);
-        Arrays.stream(keywordsMeToo).forEach(stringTicksAround);
+        rules.getKeywords(ReplyCategory.FEEDBACK).forEach(stringTicksAround);
+        rules.getKeywords(ReplyCategory.CRITICA).forEach(stringTicksAround);
+        rules.getKeywords(ReplyCategory.E_SE).forEach(stringTicksAround);
+        rules.getKeywords(ReplyCategory.ME_TOO).forEach(stringTicksAround);
+        stringTicksAround.accept(SEARCH_COMMAND + "<parole> [" + SEARCH_AUTHOR + "<nome>] [" + SEARCH_TYPE + "<tipo>]");
     }
 
-    private static boolean containsOne(String payloadText, String... keywords) {
-        long count = 0;
-        if (null != keywords) {
-            count = Arrays.stream(keywords).map(x -> x.toLowerCase(Locale.ROOT)).filter(payloadText.toLowerCase(Locale.ROOT)::contains).count();
-        }
-        boolean containsOne = 0 != count;
-        if (containsOne) {
-            logger.debug("payload contains at least one of the keywords");
-        }
-        return containsOne;
-    }
-
-    private static void appendRandomText(List<? extends CatalogEntryBean> feedbackBeans, StringBuilder resultBuilder) {
+    static void appendRandomText(String bag, List<? extends CatalogEntryBean> feedbackBeans, StringBuilder resultBuilder) {
         int size = feedbackBeans.size();
         logger.debug("append one of {} beans", size);
         if (0 < size) {
-            int index = secureRandom.nextInt(size);
+            int index = shuffleBags.next(bag, feedbackBeans);
             logger.debug("take bean {}", index);
             CatalogEntryBean catalogEntryBean = feedbackBeans.get(index);
             String text = catalogEntryBean.getText();
@@ -173,83 +149,59 @@ public enum SlackManagerUtils {
         }
     }
 
-    private static List<CatalogEntryBean> getBeansForAuthor(Map<String, ? extends List<CatalogEntryBean>> authorsMap, Map<String, String[]> authorTranslations, String payloadText) {
+    private static List<CatalogEntryBean> getBeansForAuthor(CatalogSnapshot catalog, String payloadText) {
         logger.debug("try to get beans for author");
-        List<CatalogEntryBean> beans = authorsMap.entrySet()
-                .stream().filter(
-                        x -> !x.getKey().trim().isEmpty() && containsOne(payloadText, authorTranslations.get(x.getKey())))
-                .map(Map.Entry::getValue).flatMap(List::stream)
-                .collect(Collectors.toList());
-        logger.debug("found {} author beans for the payload", beans.size());
+        String alias = catalog.getKeywordMatcher().firstKeyword(payloadText, ReplyCategory.AUTHOR);
+        List<CatalogEntryBean> beans = catalog.getBeansForAlias(alias);
+        logger.debug("found {} author beans for alias {}", beans.size(), alias);
         return beans;
     }
 
-    public static void doCatalogCsvResponse(AsyncMethodsClient client, String user, String channelId, String botToken) throws IOException, SlackApiException, InterruptedException {
-        Future<UsergroupsUsersListResponse> responseFuture = client.usergroupsUsersList(createUsergroupsUsersListRequest(botToken));
-        UsergroupsUsersListResponse usergroupsUsersListResponse = null;
-        try {
-            usergroupsUsersListResponse = responseFuture.get();
-        } catch (InterruptedException e) {
-            logger.warn("future of doCatalogCsvResponse got interrupted", e);
-            throw e;
-        } catch (ExecutionException e) {
-            logger.warn("future of doCatalogCsvResponse couldn't be executed", e);
-        }
-        if (null != usergroupsUsersListResponse && usergroupsUsersListResponse.isOk() && usergroupsUsersListResponse.getUsers().contains(user)) {
-            uploadCatalog(client, botToken, channelId);
-        } else {
-            logger.info("the user {} is not in administrators bot group, so nothing was imported", user);
-        }
-    }
-
-    public static UsergroupsUsersListRequest createUsergroupsUsersListRequest(String botToken) {
-        return UsergroupsUsersListRequest.builder().token(botToken).usergroup("S01RM9CR39C").build();
+    /**
+     * Uploads the catalog export to the channel if the user is an administrator. Nothing blocks, the returned
+     * future completes when the upload is done or was refused.
+     */
+    public static CompletableFuture<Void> doCatalogCsvResponse(OutboundDispatcher outboundDispatcher, AdminGroupCache adminGroup, CatalogExport export, String user, String channelId, String botToken) {
+        return adminGroup.isAdmin(user)
+                .thenCompose(admin -> {
+                    if (admin) {
+                        return uploadCatalog(outboundDispatcher, export, botToken, channelId);
+                    }
+                    logger.info("the user {} is not in administrators bot group, so nothing was imported", user);
+                    return CompletableFuture.<Void>completedFuture(null);
+                })
+                .whenComplete((result, throwable) -> {
+                    if (null != throwable) {
+                        logger.warn("future of doCatalogCsvResponse couldn't be executed", throwable);
+                    }
+                });
     }
 
-    private static void uploadCatalog(AsyncMethodsClient client, String botToken, String channelId) throws InterruptedException {
-        // The name of the file to upload
-        String filepath = "./config/catalog.csv";
-        Path path = null;
-        try {
-            URL systemResource = ClassLoader.getSystemResource(filepath);
-            if (null != systemResource) {
-                path = Paths.get(systemResource.toURI());
-            } else {
-                path = FileSystems.getDefault().getPath(filepath);
-            }
-        } catch (URISyntaxException e) {
-            logger.error("Could not find file {} ", filepath);
+    private static CompletableFuture<Void> uploadCatalog(OutboundDispatcher outboundDispatcher, CatalogExport export, String botToken, String channelId) {
+        if (export.isEmpty()) {
+            logger.warn("there is no catalog loaded yet, nothing to upload");
+            return CompletableFuture.completedFuture(null);
         }
-        if (null != path) {
-            // effectively final for lambda expression... :
-            Path finalPath = path.normalize();
-            logger.info("uploading {}...", finalPath.toAbsolutePath());
-            CompletableFuture<FilesUploadResponse> resultFuture = client.filesUpload(r -> r
-                    // The token you used to initialize your app is stored in the `context` object
-                    .token(botToken)
-                    .initialComment("Here's my catalog :smile:")
-                    .file(finalPath.toFile())
-                    .filename("catalog.csv")
-                    .channels(Collections.singletonList(channelId))
-                    .filetype("csv")
-            );
-            FilesUploadResponse response = null;
-            try {
-                response = resultFuture.get();
-            } catch (InterruptedException e) {
-                logger.warn("future of updateCatalog got interrupted", e);
-                throw e;
-            } catch (ExecutionException e) {
-                logger.warn("future of updateCatalog couldn't be executed", e);
-            }
+        logger.info("uploading catalog version {} ({} bytes, sha256 {})...", export.getVersion(), export.getContent().length,
+                export.getSha256());
+        FilesUploadRequest request = FilesUploadRequest.builder()
+                // The token you used to initialize your app is stored in the `context` object
+                .token(botToken)
+                .initialComment("Here's my catalog :smile:")
+                .fileData(export.getContent())
+                .filename(export.getFilename())
+                // the checksum in the title tells uploads of an unchanged catalog from those of a changed one
+                .title(export.getFilename() + " " + export.getSha256().substring(0, 12))
+                .channels(Collections.singletonList(channelId))
+                .filetype(export.getFiletype())
+                .build();
+        return outboundDispatcher.filesUpload(channelId, request).thenAccept(response -> {
             if (null == response || !response.isOk()) {
                 logger.warn("could not upload file {}", response);
             } else {
                 logger.info("file {} uploaded", response.getFile().getName());
             }
-        } else {
-            logger.warn("there were no file found for upload, file is '{}'", filepath);
-        }
+        });
     }
 
 }
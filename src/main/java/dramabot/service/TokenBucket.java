@@ -0,0 +1,61 @@
+package dramabot.service;
+
+/**
+ * Token bucket with fractional refill. Not thread safe, the {@link OutboundDispatcher} guards its buckets.
+ * Times are {@link System#nanoTime()} values.
+ */
+final class TokenBucket {
+
+    private final double capacity;
+
+    private final double tokensPerNano;
+
+    private double tokens;
+
+    // tokens are refilled from here on, in the future while the bucket is blocked
+    private long refilledAt;
+
+    TokenBucket(double capacity, double tokensPerSecond, long now) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.refilledAt = now;
+    }
+
+    /**
+     * @return nanos until one token is available, 0 if it is available now
+     */
+    long nanosUntilAvailable(long now) {
+        refill(now);
+        long blocked = Math.max(0L, refilledAt - now);
+        return 1d <= tokens ? blocked : blocked + (long) Math.ceil((1d - tokens) / tokensPerNano);
+    }
+
+    /**
+     * Takes one token, callers check {@link #nanosUntilAvailable(long)} first.
+     */
+    void take(long now) {
+        refill(now);
+        tokens -= 1d;
+    }
+
+    /**
+     * Empties the bucket until the given time, e.g. because slack answered with Retry-After.
+     */
+    void blockUntil(long until) {
+        tokens = 0d;
+        refilledAt = Math.max(refilledAt, until);
+    }
+
+    boolean isFull(long now) {
+        refill(now);
+        return capacity <= tokens;
+    }
+
+    private void refill(long now) {
+        if (now > refilledAt) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package dramabot.service.model;
+
+/**
+ * Number of catalog entries of one type, as returned by the database without loading the entries.
+ */
+public class TypeCount {
+
+    private final String type;
+
+    private final long count;
+
+    public TypeCount(String type, long count) {
+        this.type = type;
+        this.count = count;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,8 @@
+package dramabot.service.repository;
+
+import dramabot.hibernate.bootstrap.model.CatalogImportState;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface CatalogImportStateRepository extends JpaRepository<CatalogImportState, String> {
+
+}
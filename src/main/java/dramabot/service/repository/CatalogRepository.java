@@ -1,8 +1,56 @@
 package dramabot.service.repository;
 
 import dramabot.hibernate.bootstrap.model.CatalogEntry;
+import dramabot.service.model.CatalogEntryBean;
+import dramabot.service.model.TypeCount;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface CatalogRepository extends JpaRepository<CatalogEntry, Long> {
+import javax.persistence.QueryHint;
+import java.util.List;
+
+import static org.hibernate.annotations.QueryHints.CACHEABLE;
+
+/**
+ * The read queries select into {@link CatalogEntryBean} and {@link TypeCount} directly, no entity is hydrated.
+ * Type and author are stored trimmed and indexed, they are compared as they are. Reads go through the query
+ * cache, which {@link dramabot.service.JpaCatalogStore} evicts after every import.
+ */
+public interface CatalogRepository extends JpaRepository<CatalogEntry, Long>, CatalogRepositoryCustom {
+
+    /**
+     * @return all entries, from the second-level cache as long as the catalog did not change
+     */
+    @Override
+    @QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
+    List<CatalogEntry> findAll(Sort sort);
+
+    /**
+     * @param author the author as stored, e.g. "Gubiani"
+     * @return the entries of the author in the order of the import
+     */
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
+    @Query("select new dramabot.service.model.CatalogEntryBean(e.entryText, e.entryAuthor, e.entryType)"
+            + " from CatalogEntry e where e.entryAuthor = :author order by e.id")
+    List<CatalogEntryBean> findBeansByAuthor(@Param("author") String author);
+
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
+    @Query("select count(e) from CatalogEntry e where e.entryType = :type")
+    long countByType(@Param("type") String type);
+
+    /**
+     * @return the number of entries per type, entries without type are counted with type null
+     */
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
+    @Query("select new dramabot.service.model.TypeCount(e.entryType, count(e)) from CatalogEntry e"
+            + " group by e.entryType")
+    List<TypeCount> countPerType();
 
 }
@@ -0,0 +1,48 @@
+package dramabot.service.repository;
+
+import dramabot.hibernate.bootstrap.model.CatalogEntry;
+import dramabot.service.model.CatalogEntryBean;
+
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface CatalogRepositoryCustom {
+
+    /**
+     * Inserts one chunk of entries, the inserts are sent as JDBC batches. The chunk joins the transaction of the
+     * running import, so the chunks of one import are committed or rolled back together.
+     *
+     * @param entries the new entries
+     * @return the number of inserted entries
+     */
+    int insertAll(List<CatalogEntry> entries);
+
+    /**
+     * Loads only ids and {@link CatalogEntry#getRowHash()} of all entries, no entity is hydrated.
+     *
+     * @return the ids of the entries per row hash, a mutable map owned by the caller
+     */
+    Map<String, Deque<Long>> findIdsByRowHash();
+
+    /**
+     * Deletes the given entries with set-based statements.
+     *
+     * @param ids ids of the entries
+     * @return the number of deleted entries
+     */
+    int deleteByIds(Collection<Long> ids);
+
+    /**
+     * Picks a random entry of the type with two seeks on the (type, id) index: the id range of the type, then the
+     * first entry of the type at or after a random id of that range. No row is skipped over, the cost does not
+     * grow with the catalog. Entries after a gap in the ids of the type are picked a little more often.
+     *
+     * @param type the type as stored, e.g. "critica"
+     * @return a random entry of the type, empty if there is none
+     */
+    Optional<CatalogEntryBean> findRandomByType(String type);
+
+}
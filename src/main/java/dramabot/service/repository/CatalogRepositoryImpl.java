@@ -0,0 +1,82 @@
+package dramabot.service.repository;
+
+import dramabot.HibernateConf;
+import dramabot.hibernate.bootstrap.model.CatalogEntry;
+import dramabot.service.model.CatalogEntryBean;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class CatalogRepositoryImpl implements CatalogRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int insertAll(List<CatalogEntry> entries) {
+        int count = 0;
+        for (CatalogEntry entry : entries) {
+            entityManager.persist(entry);
+            count++;
+            if (0 == count % HibernateConf.JDBC_BATCH_SIZE) {
+                // send the batch and keep the persistence context small
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return count;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Deque<Long>> findIdsByRowHash() {
+        Map<String, Deque<Long>> existing = new HashMap<>();
+        List<Object[]> rows = entityManager.createQuery("select e.id, e.rowHash from CatalogEntry e", Object[].class)
+                .getResultList();
+        for (Object[] row : rows) {
+            existing.computeIfAbsent((String) row[1], x -> new ArrayDeque<>()).add((Long) row[0]);
+        }
+        return existing;
+    }
+
+    @Override
+    @Transactional
+    public int deleteByIds(Collection<Long> ids) {
+        List<Long> obsolete = new ArrayList<>(ids);
+        int deleted = 0;
+        for (int i = 0; i < obsolete.size(); i += HibernateConf.JDBC_BATCH_SIZE) {
+            List<Long> chunk = obsolete.subList(i, Math.min(i + HibernateConf.JDBC_BATCH_SIZE, obsolete.size()));
+            deleted += entityManager.createQuery("delete from CatalogEntry e where e.id in :ids")
+                    .setParameter("ids", chunk).executeUpdate();
+        }
+        return deleted;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<CatalogEntryBean> findRandomByType(String type) {
+        Object[] range = entityManager.createQuery(
+                "select min(e.id), max(e.id) from CatalogEntry e where e.entryType = :type", Object[].class)
+                .setParameter("type", type).setHint(QueryHints.CACHEABLE, true).getSingleResult();
+        if (null == range[0]) {
+            return Optional.empty();
+        }
+        long min = (Long) range[0];
+        long max = (Long) range[1];
+        long id = min + ThreadLocalRandom.current().nextLong(max - min + 1);
+        List<CatalogEntryBean> beans = entityManager.createQuery(
+                "select new dramabot.service.model.CatalogEntryBean(e.entryText, e.entryAuthor, e.entryType)"
+                        + " from CatalogEntry e where e.entryType = :type and e.id >= :id order by e.id",
+                CatalogEntryBean.class)
+                .setParameter("type", type).setParameter("id", id).setMaxResults(1).getResultList();
+        // the catalog may have changed between the two queries
+        return beans.isEmpty() ? Optional.empty() : Optional.of(beans.get(0));
+    }
+}
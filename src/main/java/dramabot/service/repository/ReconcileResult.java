@@ -0,0 +1,28 @@
+package dramabot.service.repository;
+
+/**
+ * Outcome of an import into a {@link dramabot.service.CatalogStore}.
+ */
+public class ReconcileResult {
+
+    private final int inserted;
+
+    private final int deleted;
+
+    public ReconcileResult(int inserted, int deleted) {
+        this.inserted = inserted;
+        this.deleted = deleted;
+    }
+
+    public int getInserted() {
+        return inserted;
+    }
+
+    public int getDeleted() {
+        return deleted;
+    }
+
+    public boolean isUnchanged() {
+        return 0 == inserted && 0 == deleted;
+    }
+}
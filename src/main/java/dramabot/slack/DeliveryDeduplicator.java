@@ -0,0 +1,122 @@
+package dramabot.slack;
+
+import com.slack.api.bolt.handler.BoltEventHandler;
+import com.slack.api.bolt.handler.builtin.SlashCommandHandler;
+import com.slack.api.model.event.Event;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the ids of events and the trigger ids of slash commands for a while, so deliveries which slack retries
+ * because the first ack was too slow are acked at once instead of being answered twice. The number of remembered
+ * ids is bounded; hits and misses are counted as "dramabot.dedup".
+ */
+@Component
+public class DeliveryDeduplicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryDeduplicator.class);
+
+    private final long ttlNanos;
+
+    private final int maxEntries;
+
+    // delivery key -> time it expires, ordered by arrival; guarded by itself
+    private final LinkedHashMap<String, Long> seen = new LinkedHashMap<>();
+
+    private final Counter eventHits;
+
+    private final Counter eventMisses;
+
+    private final Counter commandHits;
+
+    private final Counter commandMisses;
+
+    public DeliveryDeduplicator(MeterRegistry registry,
+                                @Value("${dramabot.dedup.ttl-seconds:600}") long ttlSeconds,
+                                @Value("${dramabot.dedup.max-entries:10000}") int maxEntries) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxEntries = maxEntries;
+        eventHits = registry.counter("dramabot.dedup", "kind", "event", "result", "hit");
+        eventMisses = registry.counter("dramabot.dedup", "kind", "event", "result", "miss");
+        commandHits = registry.counter("dramabot.dedup", "kind", "command", "result", "hit");
+        commandMisses = registry.counter("dramabot.dedup", "kind", "command", "result", "miss");
+    }
+
+    public <E extends Event> BoltEventHandler<E> deduplicated(BoltEventHandler<E> delegate) {
+        return (req, ctx) -> {
+            String key = "event:" + req.getEventId();
+            if (null == req.getEventId() || firstDelivery(key, eventHits, eventMisses)) {
+                try {
+                    return delegate.apply(req, ctx);
+                } catch (Exception e) {
+                    forget(key);
+                    throw e;
+                }
+            }
+            logger.info("event {} was delivered before, retry {} ({}) is only acked", req.getEventId(),
+                    ctx.getRetryNum(), ctx.getRetryReason());
+            return ctx.ack();
+        };
+    }
+
+    public SlashCommandHandler deduplicated(SlashCommandHandler delegate) {
+        return (req, ctx) -> {
+            String triggerId = req.getPayload().getTriggerId();
+            String key = "command:" + triggerId;
+            if (null == triggerId || firstDelivery(key, commandHits, commandMisses)) {
+                try {
+                    return delegate.apply(req, ctx);
+                } catch (Exception e) {
+                    forget(key);
+                    throw e;
+                }
+            }
+            logger.info("command with trigger {} was delivered before, it is only acked", triggerId);
+            return ctx.ack();
+        };
+    }
+
+    private boolean firstDelivery(String key, Counter hits, Counter misses) {
+        long now = System.nanoTime();
+        boolean first;
+        synchronized (seen) {
+            evict(now);
+            Long expiresAt = seen.get(key);
+            first = null == expiresAt || 0 < now - expiresAt;
+            if (first) {
+                seen.remove(key);
+                seen.put(key, now + ttlNanos);
+            }
+        }
+        (first ? misses : hits).increment();
+        return first;
+    }
+
+    private void forget(String key) {
+        synchronized (seen) {
+            seen.remove(key);
+        }
+    }
+
+    private void evict(long now) {
+        Iterator<Map.Entry<String, Long>> entries = seen.entrySet().iterator();
+        int size = seen.size();
+        while (entries.hasNext()) {
+            Map.Entry<String, Long> eldest = entries.next();
+            if (size < maxEntries && 0 >= now - eldest.getValue()) {
+                break;
+            }
+            entries.remove();
+            size--;
+        }
+    }
+}
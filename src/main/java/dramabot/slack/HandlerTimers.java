@@ -0,0 +1,47 @@
+package dramabot.slack;
+
+import com.slack.api.bolt.handler.BoltEventHandler;
+import com.slack.api.bolt.handler.builtin.SlashCommandHandler;
+import com.slack.api.model.event.Event;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps bolt handlers to record their latency as histogram "dramabot.handler", tagged with the handler name.
+ */
+public enum HandlerTimers {
+    ;
+
+    private static final String TIMER_NAME = "dramabot.handler";
+
+    public static <E extends Event> BoltEventHandler<E> timed(MeterRegistry registry, String handler, BoltEventHandler<E> delegate) {
+        Timer timer = createTimer(registry, handler);
+        return (req, ctx) -> {
+            long start = System.nanoTime();
+            try {
+                return delegate.apply(req, ctx);
+            } finally {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    public static SlashCommandHandler timed(MeterRegistry registry, String handler, SlashCommandHandler delegate) {
+        Timer timer = createTimer(registry, handler);
+        return (req, ctx) -> {
+            long start = System.nanoTime();
+            try {
+                return delegate.apply(req, ctx);
+            } finally {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    private static Timer createTimer(MeterRegistry registry, String handler) {
+        return Timer.builder(TIMER_NAME).tag("handler", handler).publishPercentileHistogram()
+                .description("time until a bolt handler acknowledged its request").register(registry);
+    }
+}
@@ -0,0 +1,63 @@
+package dramabot.slack;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor for reply work with a bounded admission queue. Tasks beyond the queue capacity are rejected with a
+ * {@link RejectedExecutionException} and counted instead of piling up while Slack is slow. Reply tasks must not
+ * block on Slack calls, they compose the returned futures instead.
+ */
+public class ReplyExecutor extends ThreadPoolExecutor implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplyExecutor.class);
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ReplyExecutor(int threads, int queueCapacity) {
+        super(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                new ReplyThreadFactory());
+        setRejectedExecutionHandler((runnable, executor) -> {
+            long count = rejected.incrementAndGet();
+            logger.warn("reply rejected, {} replies are queued; {} rejected since start", getQueue().size(), count);
+            throw new RejectedExecutionException("reply queue is full");
+        });
+    }
+
+    /**
+     * Publishes pool size, active threads and queue depth as "executor.*" metrics with name "reply", and the
+     * rejections as "dramabot.reply.rejected".
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new ExecutorServiceMetrics(this, "reply", Collections.emptyList()).bindTo(registry);
+        FunctionCounter.builder("dramabot.reply.rejected", rejected, AtomicLong::get)
+                .description("replies rejected because the queue was full").register(registry);
+    }
+
+    /**
+     * @return number of tasks rejected because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private static class ReplyThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger number = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "dramabot-reply-" + number.incrementAndGet());
+        }
+    }
+}
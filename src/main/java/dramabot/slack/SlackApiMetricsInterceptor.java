@@ -0,0 +1,87 @@
+package dramabot.slack;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Records latency ("dramabot.slack.api") and errors ("dramabot.slack.api.errors") of the calls to the slack web
+ * api, tagged with the api method. Slack reports most errors with status 200 and {@code "ok":false}, so the start
+ * of the response body is peeked for the error code. Only requests below the methods endpoint url prefix are
+ * recorded, so a local stand-in of slack is measured like slack itself; other requests pass unrecorded.
+ */
+public class SlackApiMetricsInterceptor implements Interceptor {
+
+    private static final long PEEK_BYTES = 256;
+
+    private static final Pattern ERROR = Pattern.compile("^\\{\\s*\"ok\"\\s*:\\s*false\\s*,\\s*\"error\"\\s*:\\s*\"([a-z_]+)\"");
+
+    private final MeterRegistry registry;
+
+    private final HttpUrl methodsEndpoint;
+
+    /**
+     * @param methodsEndpointUrlPrefix the prefix the api method is appended to, e.g. https://slack.com/api/
+     */
+    public SlackApiMetricsInterceptor(MeterRegistry registry, String methodsEndpointUrlPrefix) {
+        this.registry = registry;
+        this.methodsEndpoint = HttpUrl.get(methodsEndpointUrlPrefix);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String method = getApiMethod(request);
+        if (null == method) {
+            return chain.proceed(request);
+        }
+        long start = System.nanoTime();
+        String status = "IOException";
+        try {
+            Response response = chain.proceed(request);
+            status = String.valueOf(response.code());
+            String error = getError(response);
+            if (null != error) {
+                registry.counter("dramabot.slack.api.errors", "method", method, "error", error).increment();
+            }
+            return response;
+        } catch (IOException e) {
+            registry.counter("dramabot.slack.api.errors", "method", method, "error", status).increment();
+            throw e;
+        } finally {
+            Timer.builder("dramabot.slack.api").tag("method", method).tag("status", status)
+                    .publishPercentileHistogram().register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private String getApiMethod(Request request) {
+        HttpUrl url = request.url();
+        if (!methodsEndpoint.host().equals(url.host()) || methodsEndpoint.port() != url.port()) {
+            return null;
+        }
+        String prefix = methodsEndpoint.encodedPath();
+        String path = url.encodedPath();
+        if (path.length() <= prefix.length() || !path.startsWith(prefix)) {
+            return null;
+        }
+        String method = path.substring(prefix.length());
+        return method.contains("/") ? null : method;
+    }
+
+    private static String getError(Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            return String.valueOf(response.code());
+        }
+        Matcher matcher = ERROR.matcher(response.peekBody(PEEK_BYTES).string());
+        return matcher.find() ? matcher.group(1) : null;
+    }
+}
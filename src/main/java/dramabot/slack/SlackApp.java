@@ -1,20 +1,31 @@
 package dramabot.slack;
 
+import com.slack.api.Slack;
+import com.slack.api.SlackConfig;
 import com.slack.api.bolt.App;
 import com.slack.api.bolt.AppConfig;
+import com.slack.api.methods.AsyncMethodsClient;
+import com.slack.api.methods.MethodsClient;
 import com.slack.api.model.event.*;
+import com.slack.api.util.http.SlackHttpClient;
 import dramabot.service.SlackCommandManager;
 import dramabot.service.SlackEventManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.OkHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.OkHttp3ClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import static dramabot.slack.HandlerTimers.timed;
+
 
 @Configuration
 public class SlackApp {
@@ -27,42 +38,71 @@ public class SlackApp {
     public static final String CRITICA = "critica";
     public static final String FEEDBACK = "feedback";
     public static final String EVERYTHING_ELSE = "everything else";
+    public static final String ALIAS = "alias";
     public static final String TICK_OUT = "'";
     public static final String TICK_IN = " '";
 
     @Bean
-    public App dramabotApp(SlackCommandManager commandManager, SlackEventManager eventManager) {
-        AppConfig appConfig = AppConfig.builder().
+    public Slack slack(OkHttpClient okHttpClient,
+                       @Value("${dramabot.slack.methods-endpoint-url-prefix:https://slack.com/api/}") String methodsEndpointUrlPrefix) {
+        SlackConfig config = new SlackConfig();
+        config.setMethodsEndpointUrlPrefix(methodsEndpointUrlPrefix);
+        return Slack.getInstance(config, new SlackHttpClient(okHttpClient));
+    }
+
+    @Bean
+    public MethodsClient methodsClient(Slack slack) {
+        return slack.methods(System.getenv("SLACK_BOT_TOKEN"));
+    }
+
+    @Bean
+    public AsyncMethodsClient asyncMethodsClient(Slack slack) {
+        return slack.methodsAsync(System.getenv("SLACK_BOT_TOKEN"));
+    }
+
+    @Bean
+    public App dramabotApp(Slack slack, MeterRegistry meterRegistry, DeliveryDeduplicator deduplicator,
+                           SlackCommandManager commandManager, SlackEventManager eventManager) {
+        AppConfig appConfig = AppConfig.builder().slack(slack).
                 /*clientId(clientId).
                 requestVerificationEnabled(false).*/
                         clientSecret(System.getenv("SLACK_CLIENT_SECRET")).
                         signingSecret(System.getenv("SLACK_SIGNING_SECRET")).
                         singleTeamBotToken(System.getenv("SLACK_BOT_TOKEN")).build();
         App app = new App(appConfig);
-        app.event(AppMentionEvent.class, eventManager.mentionEventHandler());
-        app.command("/dramabot", commandManager.dramabotCommandHandler());
-        app.event(AppHomeOpenedEvent.class, eventManager.getHome());
-        app.event(MessageFileShareEvent.class, eventManager.getMessageSharedFile());
-        app.event(FileSharedEvent.class, eventManager.getSharedFile());
-        app.event(MessageBotEvent.class, eventManager.getBotMessage());
-        app.event(MessageEvent.class, eventManager.getMessage());
-        app.event(FileCreatedEvent.class, eventManager.getCreatedFile());
+        app.event(AppMentionEvent.class, timed(meterRegistry, "mention", deduplicator.deduplicated(eventManager.mentionEventHandler())));
+        app.command("/dramabot", timed(meterRegistry, "command", deduplicator.deduplicated(commandManager.dramabotCommandHandler())));
+        app.event(AppHomeOpenedEvent.class, timed(meterRegistry, "home", eventManager.getHome()));
+        app.event(MessageFileShareEvent.class, timed(meterRegistry, "message_file_share", deduplicator.deduplicated(eventManager.getMessageSharedFile())));
+        app.event(FileSharedEvent.class, timed(meterRegistry, "file_shared", eventManager.getSharedFile()));
+        app.event(MessageBotEvent.class, timed(meterRegistry, "bot_message", eventManager.getBotMessage()));
+        app.event(MessageEvent.class, timed(meterRegistry, "message", eventManager.getMessage()));
+        app.event(FileCreatedEvent.class, timed(meterRegistry, "file_created", eventManager.getCreatedFile()));
+        app.event(SubteamMembersChangedEvent.class, timed(meterRegistry, "subteam_members_changed", eventManager.getSubteamMembersChanged()));
         logger.info("registered event-handlers and commands of dramabot");
         return app;
     }
 
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
+    @ConditionalOnProperty(name = "dramabot.transport", havingValue = "http", matchIfMissing = true)
+    public ServletRegistrationBean<SlackAppController> slackAppServlet(App app) {
+        return new ServletRegistrationBean<>(new SlackAppController(app), "/slack/events");
+    }
+
+    @Bean
+    public RestTemplate restTemplate(RestTemplateBuilder builder, OkHttpClient okHttpClient) {
         ClientHttpRequestInterceptor interceptor = (request, body, execution) -> {
             request.getHeaders().add("Authorization", "Bearer " + System.getenv("SLACK_BOT_TOKEN"));
             return execution.execute(request, body);
         };
-        return builder.interceptors(interceptor).build();
+        return builder.requestFactory(() -> new OkHttp3ClientHttpRequestFactory(okHttpClient))
+                .interceptors(interceptor).build();
     }
 
-    @Bean
-    public ExecutorService executorService() {
-        return Executors.newFixedThreadPool(5);
+    @Bean(destroyMethod = "shutdown")
+    public ReplyExecutor executorService(@Value("${dramabot.reply.threads:5}") int threads,
+                                         @Value("${dramabot.reply.queue-capacity:500}") int queueCapacity) {
+        return new ReplyExecutor(threads, queueCapacity);
     }
 
 }
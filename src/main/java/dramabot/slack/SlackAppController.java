@@ -3,9 +3,9 @@ package dramabot.slack;
 import com.slack.api.bolt.App;
 import com.slack.api.bolt.servlet.SlackAppServlet;
 
-import javax.servlet.annotation.WebServlet;
-
-@WebServlet("/slack/events")
+/**
+ * The http transport of dramabot at /slack/events, registered by {@link SlackApp} unless socket mode is configured.
+ */
 public class SlackAppController extends SlackAppServlet {
 
     public SlackAppController(App app) {
@@ -0,0 +1,158 @@
+package dramabot.slack;
+
+import com.slack.api.bolt.App;
+import com.slack.api.bolt.socket_mode.SocketModeApp;
+import com.slack.api.socket_mode.SocketModeClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives the events of {@link SlackApp#dramabotApp} through a socket mode connection instead of the http
+ * endpoint, active with {@code dramabot.transport=socket-mode}. The app token is taken from SLACK_APP_TOKEN.
+ * <p>
+ * Reconnecting is done here and not by the sdk: the connection is checked periodically and after every close or
+ * error, failed attempts are repeated with exponential backoff. The websocket url comes from apps.connections.open
+ * below {@code dramabot.slack.methods-endpoint-url-prefix}, so a local stand-in of slack can be used for tests.
+ */
+@Component
+@ConditionalOnProperty(name = "dramabot.transport", havingValue = "socket-mode")
+public class SocketModeTransport implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(SocketModeTransport.class);
+
+    private final App app;
+
+    private final String appToken;
+
+    private final SocketModeClient.Backend backend;
+
+    private final long initialBackoffMillis;
+
+    private final long maxBackoffMillis;
+
+    private final long checkIntervalMillis;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dramabot-socket-mode");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // only touched by the scheduler thread
+    private SocketModeApp socketModeApp;
+
+    private long backoffMillis;
+
+    private boolean reconnectScheduled;
+
+    private volatile boolean running;
+
+    public SocketModeTransport(App app,
+                               @Value("${SLACK_APP_TOKEN:}") String appToken,
+                               @Value("${dramabot.socket-mode.backend:Tyrus}") SocketModeClient.Backend backend,
+                               @Value("${dramabot.socket-mode.initial-backoff-millis:1000}") long initialBackoffMillis,
+                               @Value("${dramabot.socket-mode.max-backoff-millis:60000}") long maxBackoffMillis,
+                               @Value("${dramabot.socket-mode.check-interval-millis:10000}") long checkIntervalMillis) {
+        this.app = app;
+        this.appToken = appToken;
+        this.backend = backend;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.backoffMillis = initialBackoffMillis;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        scheduler.execute(this::connect);
+        scheduler.scheduleWithFixedDelay(this::checkConnection, checkIntervalMillis, checkIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        logger.info("socket mode transport started with backend {}", backend);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+        if (null != socketModeApp) {
+            try {
+                socketModeApp.stop();
+            } catch (Exception e) {
+                logger.warn("socket mode app did not stop cleanly: {}", e.getMessage());
+            }
+        }
+        logger.info("socket mode transport stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void connect() {
+        reconnectScheduled = false;
+        if (!running) {
+            return;
+        }
+        if (null != socketModeApp && null != socketModeApp.getClient() && socketModeApp.getClient().verifyConnection()) {
+            // the close of a replaced session, nothing to do
+            return;
+        }
+        try {
+            if (null == socketModeApp) {
+                socketModeApp = new SocketModeApp(appToken, backend, app);
+            }
+            SocketModeClient client = socketModeApp.getClient();
+            if (null == client) {
+                socketModeApp.startAsync();
+                client = socketModeApp.getClient();
+                client.setAutoReconnectEnabled(false);
+                client.addWebSocketCloseListener((code, reason) -> {
+                    logger.warn("socket mode connection closed with {}: {}", code, reason);
+                    scheduleReconnect(0L);
+                });
+                client.addWebSocketErrorListener(error -> {
+                    logger.warn("socket mode connection failed: {}", error.getMessage());
+                    scheduleReconnect(0L);
+                });
+            } else {
+                client.connectToNewEndpoint();
+            }
+            logger.info("socket mode connected");
+            backoffMillis = initialBackoffMillis;
+        } catch (Exception e) {
+            logger.warn("socket mode connect failed, next attempt in {} ms: {}", backoffMillis, e.getMessage());
+            scheduleReconnect(backoffMillis);
+            backoffMillis = Math.min(2 * backoffMillis, maxBackoffMillis);
+        }
+    }
+
+    private void checkConnection() {
+        if (null != socketModeApp && null != socketModeApp.getClient() && !reconnectScheduled
+                && !socketModeApp.getClient().verifyConnection()) {
+            logger.warn("socket mode connection lost");
+            scheduleReconnect(0L);
+        }
+    }
+
+    private void scheduleReconnect(long delayMillis) {
+        if (!running) {
+            return;
+        }
+        scheduler.execute(() -> {
+            if (running && !reconnectScheduled) {
+                reconnectScheduled = true;
+                scheduler.schedule(this::connect, delayMillis, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+}
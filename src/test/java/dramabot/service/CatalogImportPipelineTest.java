@@ -0,0 +1,74 @@
+package dramabot.service;
+
+import dramabot.hibernate.bootstrap.model.CatalogEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogImportPipelineTest {
+
+    private static final int ROWS = 5000;
+
+    // every 97th row has a text longer than the column
+    private static final int REJECTED_EVERY = 97;
+
+    private Path csv;
+
+    @BeforeEach
+    void writeCsv() throws IOException {
+        csv = Files.createTempFile("catalog", ".csv");
+        StringBuilder tooLong = new StringBuilder();
+        for (int i = 0; i <= CatalogEntry.TEXT_LENGTH; i++) {
+            tooLong.append('x');
+        }
+        try (Writer writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            writer.write("\"AUTHOR\";\"TEXT\";\"TYPE\"\n");
+            for (int i = 0; i < ROWS; i++) {
+                String text = 0 == i % REJECTED_EVERY ? tooLong.toString() : "text " + i;
+                writer.write("\" \";\"" + text + "\";\" critica\"\n");
+            }
+        }
+    }
+
+    @AfterEach
+    void deleteCsv() throws IOException {
+        Files.deleteIfExists(csv);
+    }
+
+    @Test
+    void entriesAreWrittenInTheOrderOfTheFile() throws Exception {
+        List<String> written = new ArrayList<>();
+        CatalogImportPipeline.Result result = new CatalogImportPipeline(16, 4, 10)
+                .run(csv, chunk -> chunk.forEach(entry -> written.add(entry.getEntryText())));
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            if (0 != i % REJECTED_EVERY) {
+                expected.add("text " + i);
+            }
+        }
+        assertEquals(expected, written);
+        assertEquals(ROWS, result.getRead());
+        assertEquals(ROWS - expected.size(), result.getRejected());
+    }
+
+    @Test
+    void entriesAreTrimmed() throws Exception {
+        List<CatalogEntry> written = new ArrayList<>();
+        new CatalogImportPipeline(16, 2, 10).run(csv, written::addAll);
+
+        CatalogEntry first = written.get(0);
+        assertEquals("critica", first.getEntryType());
+        assertNull(first.getEntryAuthor());
+    }
+}
@@ -0,0 +1,120 @@
+package dramabot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static dramabot.service.ReplyCategory.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeywordMatcherTest {
+
+    @Test
+    void categoryWithLowerOrdinalWins() {
+        KeywordMatcher<ReplyCategory> matcher = matcher(FEEDBACK, "feedback", CRITICA, "critica", HELP, "help");
+
+        assertEquals(FEEDBACK, matcher.first(matcher.matches("una critica, poi un feedback")));
+        assertEquals(CRITICA, matcher.first(matcher.matches("help, una critica")));
+        assertEquals(HELP, matcher.first(matcher.matches("help")));
+    }
+
+    @Test
+    void allCategoriesAreCollected() {
+        KeywordMatcher<ReplyCategory> matcher = matcher(FEEDBACK, "feedback", CRITICA, "critica", HELP, "help");
+
+        assertEquals(bits(FEEDBACK, CRITICA, HELP), matcher.matches("help, una critica e un feedback"));
+    }
+
+    @Test
+    void scanStopsAtTheFirstCategory() {
+        KeywordMatcher<ReplyCategory> matcher = matcher(FEEDBACK, "feedback", CRITICA, "critica");
+
+        // nothing after the keyword of the first category is scanned
+        assertEquals(bits(FEEDBACK), matcher.matches("feedback e critica"));
+        assertEquals(bits(FEEDBACK, CRITICA), matcher.matches("critica e feedback"));
+    }
+
+    @Test
+    void firstOfMasksOfSeveralMatchers() {
+        KeywordMatcher<ReplyCategory> rules = matcher(E_SE, "e se");
+        KeywordMatcher<ReplyCategory> authors = matcher(AUTHOR, "gubiani");
+        String text = "e se lo chiedessi a gubiani?";
+
+        assertEquals(AUTHOR, rules.first(rules.matches(text) | authors.matches(text)));
+    }
+
+    @Test
+    void keywordEndingInsideALongerKeywordIsFoundByFailureLink() {
+        // "pauli" ends inside "dipaulix", the scan is on the branch of the longer keyword when it ends
+        KeywordMatcher<ReplyCategory> matcher = matcher(AUTHOR, "pauli", CRITICA, "dipaulix");
+
+        assertEquals("pauli", matcher.firstKeyword("chiedi a dipauli!", AUTHOR));
+        assertNull(matcher.firstKeyword("chiedi a dipauli!", CRITICA));
+        assertEquals(bits(AUTHOR), matcher.matches("chiedi a dipauli!"));
+        assertEquals(bits(CRITICA, AUTHOR), matcher.matches("chiedi a dipaulix"));
+    }
+
+    @Test
+    void firstKeywordIsTheOneEndingFirst() {
+        KeywordMatcher<ReplyCategory> matcher = matcher(AUTHOR, "dipauli", AUTHOR, "pauli", AUTHOR, "tollis");
+
+        assertEquals("tollis", matcher.firstKeyword("tollis o dipauli", AUTHOR));
+        // both end at the same character, the longer one is the keyword of that state
+        assertEquals("dipauli", matcher.firstKeyword("dipauli o tollis", AUTHOR));
+        assertEquals("pauli", matcher.firstKeyword("pauli o dipauli", AUTHOR));
+    }
+
+    @Test
+    void overlappingKeywordsOfOneCategory() {
+        KeywordMatcher<ReplyCategory> matcher = matcher(AUTHOR, "he", AUTHOR, "she", AUTHOR, "hers");
+
+        assertEquals("she", matcher.firstKeyword("ushers", AUTHOR));
+        assertEquals("he", matcher.firstKeyword("uhers", AUTHOR));
+    }
+
+    @Test
+    void matchingIsCaseInsensitive() {
+        KeywordMatcher<ReplyCategory> matcher = matcher(FEEDBACK, "FeedBack", AUTHOR, "Gubiani");
+
+        assertEquals(FEEDBACK, matcher.first(matcher.matches("un FEEDBACK per favore")));
+        assertEquals("gubiani", matcher.firstKeyword("chiedi a GUBIANI", AUTHOR));
+    }
+
+    @Test
+    void nullAndEmptyInput() {
+        KeywordMatcher<ReplyCategory> matcher = matcher(FEEDBACK, "feedback", CRITICA, "");
+
+        assertEquals(0L, matcher.matches(null));
+        assertEquals(0L, matcher.matches(""));
+        assertNull(matcher.first(0L));
+        assertNull(matcher.firstKeyword(null, FEEDBACK));
+        assertNull(matcher.firstKeyword("", FEEDBACK));
+        // an empty keyword is ignored, it would match everything
+        assertEquals(0L, matcher.matches("una critica"));
+    }
+
+    /**
+     * @param categoriesAndKeywords category and keyword, alternating
+     */
+    private static KeywordMatcher<ReplyCategory> matcher(Object... categoriesAndKeywords) {
+        Map<ReplyCategory, String[]> keywords = new EnumMap<>(ReplyCategory.class);
+        for (int i = 0; i < categoriesAndKeywords.length; i += 2) {
+            ReplyCategory category = (ReplyCategory) categoriesAndKeywords[i];
+            String[] words = keywords.getOrDefault(category, new String[0]);
+            String[] more = new String[words.length + 1];
+            System.arraycopy(words, 0, more, 0, words.length);
+            more[words.length] = (String) categoriesAndKeywords[i + 1];
+            keywords.put(category, more);
+        }
+        return new KeywordMatcher<>(ReplyCategory.class, keywords);
+    }
+
+    private static long bits(ReplyCategory... categories) {
+        long bits = 0L;
+        for (ReplyCategory category : categories) {
+            bits |= 1L << category.ordinal();
+        }
+        return bits;
+    }
+}
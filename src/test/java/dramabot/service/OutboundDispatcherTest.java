@@ -0,0 +1,152 @@
+package dramabot.service;
+
+import com.slack.api.methods.MethodsClient;
+import com.slack.api.methods.SlackApiException;
+import com.slack.api.methods.request.chat.ChatPostMessageRequest;
+import com.slack.api.methods.request.files.FilesUploadRequest;
+import com.slack.api.methods.response.chat.ChatPostMessageResponse;
+import com.slack.api.methods.response.files.FilesUploadResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static dramabot.service.OutboundDispatcher.CHAT_POST_MESSAGE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundDispatcherTest {
+
+    private static final long TIMEOUT_SECONDS = 10L;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private OutboundDispatcher dispatcher;
+
+    @AfterEach
+    void shutdown() {
+        if (null != dispatcher) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void throttledCallIsRetriedAfterRetryAfter() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        dispatcher = newDispatcher(request -> {
+            if (1 == attempts.incrementAndGet()) {
+                throw tooManyRequests("1");
+            }
+            return new ChatPostMessageResponse();
+        }, request -> new FilesUploadResponse(), 5);
+
+        long start = System.nanoTime();
+        assertNotNull(dispatcher.chatPostMessage(message("C1", "hi")).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(2, attempts.get());
+        assertTrue(TimeUnit.SECONDS.toNanos(1) <= System.nanoTime() - start, "retried before Retry-After");
+        assertEquals(1.0, registry.counter("dramabot.outbound.throttled", "method", CHAT_POST_MESSAGE).count());
+    }
+
+    @Test
+    void throttledCallIsDroppedAfterMaxAttempts() {
+        dispatcher = newDispatcher(request -> {
+            throw tooManyRequests("1");
+        }, request -> new FilesUploadResponse(), 1);
+
+        CompletableFuture<ChatPostMessageResponse> future = dispatcher.chatPostMessage(message("C1", "hi"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+        assertEquals(1.0, registry.counter("dramabot.outbound.dropped",
+                "method", CHAT_POST_MESSAGE, "reason", "retries").count());
+    }
+
+    @Test
+    void channelDoesNotWaitBehindAnotherChannel() throws Exception {
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch otherChannelSent = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher = newDispatcher(request -> {
+            sent.add(request.getText());
+            if ("b1".equals(request.getText())) {
+                otherChannelSent.countDown();
+            } else if ("a1".equals(request.getText())) {
+                release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            return new ChatPostMessageResponse();
+        }, request -> new FilesUploadResponse(), 5);
+
+        List<CompletableFuture<ChatPostMessageResponse>> futures = new ArrayList<>();
+        for (String text : new String[]{"a1", "a2", "a3"}) {
+            futures.add(dispatcher.chatPostMessage(message("A", text)));
+        }
+        futures.add(dispatcher.chatPostMessage(message("B", "b1")));
+
+        assertTrue(otherChannelSent.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), "B waited for the queue of A");
+        release.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("a1", "b1", "a2", "a3"), sent);
+    }
+
+    @Test
+    void slowUploadDoesNotStallMessages() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher = newDispatcher(request -> new ChatPostMessageResponse(), request -> {
+            release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return new FilesUploadResponse();
+        }, 5);
+
+        CompletableFuture<FilesUploadResponse> upload = dispatcher.filesUpload("A",
+                FilesUploadRequest.builder().channels(Collections.singletonList("A")).build());
+        CompletableFuture<ChatPostMessageResponse> message = dispatcher.chatPostMessage(message("B", "hi"));
+
+        assertNotNull(message.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertFalse(upload.isDone());
+        release.countDown();
+        assertNotNull(upload.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private OutboundDispatcher newDispatcher(Answer<ChatPostMessageRequest, ChatPostMessageResponse> messages,
+                                             Answer<FilesUploadRequest, FilesUploadResponse> uploads,
+                                             int maxAttempts) {
+        MethodsClient client = (MethodsClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MethodsClient.class}, (proxy, method, args) -> {
+                    if ("chatPostMessage".equals(method.getName()) && args[0] instanceof ChatPostMessageRequest) {
+                        return messages.answer((ChatPostMessageRequest) args[0]);
+                    }
+                    if ("filesUpload".equals(method.getName()) && args[0] instanceof FilesUploadRequest) {
+                        return uploads.answer((FilesUploadRequest) args[0]);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        // two message senders, one upload sender and limits which never get in the way of the tests
+        return new OutboundDispatcher(client, registry, 2, 1, 100, 10, maxAttempts,
+                6000, 6000, 100, 100, 100);
+    }
+
+    private static ChatPostMessageRequest message(String channel, String text) {
+        return ChatPostMessageRequest.builder().channel(channel).text(text).build();
+    }
+
+    private static SlackApiException tooManyRequests(String retryAfter) {
+        Response response = new Response.Builder()
+                .request(new Request.Builder().url("https://slack.com/api/chat.postMessage").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(429)
+                .message("Too Many Requests")
+                .header("Retry-After", retryAfter)
+                .build();
+        return new SlackApiException(response, "{\"ok\":false,\"error\":\"ratelimited\"}");
+    }
+
+    private interface Answer<Q, R> {
+        R answer(Q request) throws Exception;
+    }
+}
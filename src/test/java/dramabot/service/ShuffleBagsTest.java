@@ -0,0 +1,76 @@
+package dramabot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShuffleBagsTest {
+
+    private static final int ROUNDS = 200;
+
+    @Test
+    void everyEntryIsPickedOncePerRound() {
+        ShuffleBags bags = new ShuffleBags(10);
+        for (int size : new int[]{1, 2, 3, 4, 5, 7, 8, 9, 16, 17, 100}) {
+            List<Integer> entries = entries(size);
+            for (int round = 0; round < ROUNDS; round++) {
+                Set<Integer> picked = new HashSet<>();
+                for (int i = 0; i < size; i++) {
+                    int index = bags.next("key", entries);
+                    assertTrue(0 <= index && index < size, "index " + index + " of " + size);
+                    assertTrue(picked.add(index), "index " + index + " picked twice in a round of " + size);
+                }
+            }
+        }
+    }
+
+    @Test
+    void noEntryIsPickedTwiceInARow() {
+        ShuffleBags bags = new ShuffleBags(10);
+        for (int size : new int[]{2, 3, 4, 5}) {
+            List<Integer> entries = entries(size);
+            int previous = bags.next("key", entries);
+            for (int i = 0; i < ROUNDS * size; i++) {
+                int index = bags.next("key", entries);
+                assertNotEquals(previous, index, "repeat at pick " + i + " of size " + size);
+                previous = index;
+            }
+        }
+    }
+
+    @Test
+    void everyEntryCanStartARound() {
+        ShuffleBags bags = new ShuffleBags(10);
+        List<Integer> entries = entries(3);
+        Set<Integer> firsts = new HashSet<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            firsts.add(bags.next("round " + round % 5, new ArrayList<>(entries)));
+        }
+        assertEquals(3, firsts.size());
+    }
+
+    @Test
+    void emptyListHasNoEntry() {
+        assertEquals(-1, new ShuffleBags(10).next("key", Collections.emptyList()));
+    }
+
+    @Test
+    void bagsAreBounded() {
+        ShuffleBags bags = new ShuffleBags(3);
+        List<Integer> entries = entries(5);
+        for (int i = 0; i < 10; i++) {
+            bags.next("key " + i, entries);
+        }
+        assertTrue(3 >= bags.size());
+    }
+
+    private static List<Integer> entries(int size) {
+        List<Integer> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(i);
+        }
+        return entries;
+    }
+}
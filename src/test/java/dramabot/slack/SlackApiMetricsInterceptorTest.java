@@ -0,0 +1,92 @@
+package dramabot.slack;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the interceptor against a local stand-in of the slack web api, as configured with
+ * {@code dramabot.slack.methods-endpoint-url-prefix}.
+ */
+class SlackApiMetricsInterceptorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private HttpServer server;
+
+    private OkHttpClient client;
+
+    private String baseUrl;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = (path.endsWith("chat.postMessage") ? "{\"ok\":false,\"error\":\"channel_not_found\"}"
+                    : "{\"ok\":true}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+        client = new OkHttpClient.Builder()
+                .addInterceptor(new SlackApiMetricsInterceptor(registry, baseUrl + "/api/"))
+                .build();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    @Test
+    void callsOfTheStandInAreRecorded() throws IOException {
+        post("/api/auth.test");
+        post("/api/chat.postMessage");
+
+        Timer authTest = registry.find("dramabot.slack.api").tags("method", "auth.test", "status", "200").timer();
+        assertNotNull(authTest);
+        assertEquals(1L, authTest.count());
+        assertEquals(1.0, registry.counter("dramabot.slack.api.errors",
+                "method", "chat.postMessage", "error", "channel_not_found").count());
+    }
+
+    @Test
+    void otherRequestsAreNotRecorded() throws IOException {
+        post("/catalog.csv");
+        post("/api/nested/auth.test");
+
+        assertNull(registry.find("dramabot.slack.api").timer());
+    }
+
+    private void post(String path) throws IOException {
+        Request request = new Request.Builder().url(baseUrl + path)
+                .post(RequestBody.create("", MediaType.get("application/x-www-form-urlencoded")))
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            assertEquals(200, response.code());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package dramabot.slack;
+
+import com.slack.api.Slack;
+import com.slack.api.SlackConfig;
+import com.slack.api.bolt.App;
+import com.slack.api.bolt.AppConfig;
+import com.slack.api.socket_mode.SocketModeClient;
+import com.sun.net.httpserver.HttpServer;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Connects the transport to a local stand-in of slack: apps.connections.open below the methods endpoint url prefix
+ * hands out the url of a local websocket server.
+ */
+class SocketModeTransportTest {
+
+    private static final long TIMEOUT_SECONDS = 10L;
+
+    private static final long INITIAL_BACKOFF_MILLIS = 100L;
+
+    private static final long MAX_BACKOFF_MILLIS = 1000L;
+
+    // the times apps.connections.open was called, in nanos
+    private final List<Long> connectionsOpened = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger failingOpens = new AtomicInteger();
+
+    private final BlockingQueue<WebSocket> sessions = new LinkedBlockingQueue<>();
+
+    private WebSocketServer socketServer;
+
+    private HttpServer api;
+
+    private SocketModeTransport transport;
+
+    @BeforeEach
+    void start() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        socketServer = new WebSocketServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)) {
+            @Override
+            public void onOpen(WebSocket conn, ClientHandshake handshake) {
+                conn.send("{\"type\":\"hello\",\"num_connections\":1}");
+                sessions.add(conn);
+            }
+
+            @Override
+            public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+            }
+
+            @Override
+            public void onMessage(WebSocket conn, String message) {
+            }
+
+            @Override
+            public void onError(WebSocket conn, Exception ex) {
+            }
+
+            @Override
+            public void onStart() {
+                started.countDown();
+            }
+        };
+        socketServer.setReuseAddr(true);
+        socketServer.start();
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        api = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        api.createContext("/api/apps.connections.open", exchange -> {
+            connectionsOpened.add(System.nanoTime());
+            String body = 0 < failingOpens.getAndDecrement() ? "{\"ok\":false,\"error\":\"internal_error\"}"
+                    : "{\"ok\":true,\"url\":\"ws://127.0.0.1:" + socketServer.getPort() + "/\"}";
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        api.start();
+
+        SlackConfig config = new SlackConfig();
+        config.setMethodsEndpointUrlPrefix("http://127.0.0.1:" + api.getAddress().getPort() + "/api/");
+        App app = new App(AppConfig.builder().slack(Slack.getInstance(config))
+                .singleTeamBotToken("xoxb-test").signingSecret("test").build());
+        transport = new SocketModeTransport(app, "xapp-test", SocketModeClient.Backend.JavaWebSocket,
+                INITIAL_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS, 200L);
+    }
+
+    @AfterEach
+    void stop() throws IOException, InterruptedException {
+        transport.stop();
+        socketServer.stop();
+        api.stop(0);
+    }
+
+    @Test
+    void reconnectsWhenSlackClosesTheConnection() throws InterruptedException {
+        transport.start();
+        WebSocket first = sessions.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(first, "transport did not connect");
+
+        // slack closes connections e.g. to refresh them
+        first.close(1001, "going away");
+
+        WebSocket second = sessions.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(second, "transport did not reconnect");
+        assertNotSame(first, second);
+        assertTrue(2 <= connectionsOpened.size());
+    }
+
+    @Test
+    void failedConnectsAreRepeatedWithBackoff() throws InterruptedException {
+        failingOpens.set(3);
+
+        transport.start();
+
+        assertNotNull(sessions.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS), "transport did not connect");
+        assertTrue(4 <= connectionsOpened.size());
+        long backoffMillis = INITIAL_BACKOFF_MILLIS;
+        for (int i = 1; i < 4; i++) {
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(connectionsOpened.get(i) - connectionsOpened.get(i - 1));
+            assertTrue(backoffMillis <= waitedMillis, "attempt " + i + " after " + waitedMillis + " ms");
+            backoffMillis = Math.min(2 * backoffMillis, MAX_BACKOFF_MILLIS);
+        }
+    }
+}